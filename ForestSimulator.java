@@ -1,275 +1,695 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Scanner;
-import java.io.File;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.management.ThreadMXBean;
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
 
 /**
  * Entry point of the program.
  */
 public class ForestSimulator {
 
-    // Constants
-    private static final float MIN_DAYS = Constants.MIN_DAYS.getValue();
-    private static final float MAX_DAYS = Constants.MAX_DAYS.getValue();
-    private static final float MIN_NO_ANIMALS = Constants.MIN_NO_ANIMALS.getValue();
-    private static final float MAX_NO_ANIMALS = Constants.MAX_NO_ANIMALS.getValue();
-    private static final float MIN_AMOUNT_GRASS = Constants.MIN_AMOUNT_GRASS.getValue();
-    private static final float MAX_AMOUNT_GRASS = Constants.MAX_AMOUNT_GRASS.getValue();
-    private static final float MIN_WEIGHT = Constants.MIN_WEIGHT.getValue();
-    private static final float MAX_WEIGHT = Constants.MAX_WEIGHT.getValue();
-    private static final float MIN_SPEED = Constants.MIN_SPEED.getValue();
-    private static final float MAX_SPEED = Constants.MAX_SPEED.getValue();
-    private static final float MAX_ENERGY = Constants.MAX_ENERGY.getValue();
-    private static final float MIN_ENERGY = Constants.MIN_ENERGY.getValue();
-
     // Encapsulated Variables
-    private static int days;
-    private static float grassAmount;
-    private static int noAnimals;
+    private final OutputSink output;
+    private SpeciesRegistry species = SpeciesRegistry.DEFAULT;
+    private SimulationLimits limits = SimulationLimits.STANDARD;
+    private BreedingRules breeding;
+    private HuntingMode huntingMode = HuntingMode.NEIGHBOUR;
+    private boolean verbose;
 
     /**
-     * Gets the number of simulation days.
-     * @return the number of days.
+     * Creates a run of the program.
+     * @param output the sink the program prints to.
      */
-    public static int getDays() {
-        return days;
+    ForestSimulator(OutputSink output) {
+        this.output = output;
     }
 
     /**
-     * Sets the number of simulation days.
-     * @param days the number of days.
+     * Main method to run the simulation.
+     * With {@code --batch <directory or manifest>} it runs every listed scenario instead.
+     * With {@code --checkpoint <snapshot> <days>} it saves a snapshot every given number of days
+     * and resumes from the snapshot if it exists.
+     * With {@code --bench [filter]} it runs the benchmarks whose names contain the filter.
+     * With {@code --metrics <file>} it writes the metrics of every day to a CSV or JSON file.
+     * With {@code --ensemble <replicas> [hunt=<p>] [growth=<v>] [shuffle] [seed=<n>]} it runs
+     * many stochastic replicas of the input file and prints their statistics.
+     * With {@code --log <file> [reference|columnar]} it also writes every event to a binary log,
+     * {@code --replay <file> <day>} prints the state a log holds at the end of a day and
+     * {@code --diff <file> <file>} prints where two logs diverge.
+     * With {@code --watch <milliseconds>} it prints a summary of the running simulation that often.
+     * With {@code --serve <port> [threads] [max body bytes]} it serves simulations over HTTP until
+     * stopped.
+     * With {@code --regions <regions> [interval] [rate]} it splits the animals into regions
+     * simulated in parallel, which exchange a fraction of their animals every interval.
+     * With {@code --spatial <columns> <rows> <radius> [seed]} it places the animals at random on
+     * a landscape of grass cells, where hunters attack the nearest prey within the radius.
+     * Any of these may be preceded by {@code --species <properties>} to configure more species
+     * and {@code --limits <standard|large|properties>} to change the largest numbers of days and
+     * animals, then {@code --breeding <properties>} to let animals breed and
+     * {@code --hunting <neighbour|best-prey>} to choose how hunters pick their prey, and before
+     * that by {@code --out <file>} to print to a file instead of the standard output. Rejected
+     * hunts are only counted, or also printed one line each after {@code --verbose}.
+     * With limits above the standard ones, breeding or best-prey hunting, the input file is
+     * simulated on every core.
+     * @param args command-line arguments.
+     * @throws Exception for various simulation errors.
      */
-    public static void setDays(int days) {
-        Main.days = days;
+    public static void main(String[] args) throws InvalidInputsException, InvalidNumberOfAnimalParametersException, Exception {
+        if (args.length >= 2 && args[0].equals("--out")) {
+            try (OutputSink sink = OutputSink.open(Paths.get(args[1]))) {
+                new ForestSimulator(sink).run(Arrays.copyOfRange(args, 2, args.length));
+            }
+            return;
+        }
+        OutputSink sink = OutputSink.standard();
+        try {
+            new ForestSimulator(sink).run(args);
+        } finally {
+            sink.flush(); // Not closed: the standard output outlives the program's use of it
+        }
     }
 
     /**
-     * Gets the grass amount.
-     * @return the grass amount.
+     * Runs the mode selected by the command-line arguments, printing to the output sink.
+     * @param args command-line arguments, without the output file.
+     * @throws Exception for various simulation errors.
      */
-    public static float getGrassAmount() {
-        return grassAmount;
+    private void run(String[] args) throws Exception {
+        while (args.length >= 1 && args[0].equals("--verbose")
+                || args.length >= 2 && (args[0].equals("--species") || args[0].equals("--limits")
+                || args[0].equals("--breeding") || args[0].equals("--hunting"))) {
+            if (args[0].equals("--verbose")) {
+                verbose = true;
+                args = Arrays.copyOfRange(args, 1, args.length);
+                continue;
+            }
+            try {
+                if (args[0].equals("--species")) {
+                    species = SpeciesRegistry.load(Paths.get(args[1]));
+                } else if (args[0].equals("--limits")) {
+                    limits = SimulationLimits.load(args[1]);
+                } else if (args[0].equals("--breeding")) {
+                    breeding = BreedingRules.load(Paths.get(args[1]), species, limits);
+                } else {
+                    huntingMode = HuntingMode.parse(args[1]);
+                }
+            } catch (InvalidInputsException e) {
+                output.println(e.getMessage());
+                return;
+            }
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length == 2 && args[0].equals("--batch")) {
+            BatchRunner.main(Paths.get(args[1]), species, limits, output);
+            return;
+        }
+        if (args.length >= 1 && args[0].equals("--bench")) {
+            SimulationBenchmark.main(args.length > 1 ? args[1] : "", output);
+            return;
+        }
+        if (args.length == 3 && args[0].equals("--checkpoint")) {
+            runWithCheckpoints(Paths.get(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--metrics")) {
+            runWithMetrics(Paths.get(args[1]));
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("--ensemble")) {
+            runEnsemble(Integer.parseInt(args[1]), Arrays.copyOfRange(args, 2, args.length));
+            return;
+        }
+        if (args.length >= 2 && args.length <= 3 && args[0].equals("--log")) {
+            runWithEventLog(Paths.get(args[1]), args.length == 3 ? args[2] : "reference");
+            return;
+        }
+        if (args.length >= 2 && args.length <= 4 && args[0].equals("--serve")) {
+            int threads = args.length >= 3 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            SimulationServer server = args.length == 4
+                    ? new SimulationServer(species, limits, Long.parseLong(args[3]))
+                    : new SimulationServer(species, limits);
+            InetSocketAddress address = server.start(Integer.parseInt(args[1]), threads);
+            output.println("Listening on http://" + address.getHostString() + ":" + address.getPort() + "/simulate");
+            output.flush();
+            return;
+        }
+        if (args.length >= 2 && args.length <= 4 && args[0].equals("--regions")) {
+            runRegions(Integer.parseInt(args[1]),
+                    args.length >= 3 ? Integer.parseInt(args[2]) : Ecosystem.DEFAULT_MIGRATION_INTERVAL,
+                    args.length == 4 ? Double.parseDouble(args[3]) : Ecosystem.DEFAULT_MIGRATION_RATE);
+            return;
+        }
+        if (args.length >= 4 && args.length <= 5 && args[0].equals("--spatial")) {
+            runSpatial(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Float.parseFloat(args[3]),
+                    args.length == 5 ? Long.parseLong(args[4]) : 0);
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--watch")) {
+            runWatched(Long.parseLong(args[1]));
+            return;
+        }
+        if (args.length == 3 && args[0].equals("--replay")) {
+            printReplay(EventReplay.replay(Paths.get(args[1]), Integer.parseInt(args[2])));
+            return;
+        }
+        if (args.length == 3 && args[0].equals("--diff")) {
+            printDiff(Paths.get(args[1]), Paths.get(args[2]));
+            return;
+        }
+        runDefault();
     }
 
     /**
-     * Sets the grass amount.
-     * @param grassAmount the grass amount.
+     * Simulates the input file on the columnar engine and prints the sounds of the surviving
+     * animals, after every rejected hunt with {@code --verbose}. With limits above the standard ones, breeding or best-prey
+     * hunting, it runs on every core once the population is large enough, unless every rejected
+     * hunt is printed.
+     * @throws Exception for simulation errors other than invalid inputs.
      */
-    public static void setGrassAmount(float grassAmount) throws InvalidInputsException {
-        // Throw invalid input if not positive float
-        if (grassAmount < 0) {
-            throw new InvalidInputsException();
+    private void runDefault() throws Exception {
+        Simulation.Builder builder = Simulation.builder()
+                .input(Paths.get("input.txt"))
+                .species(species)
+                .limits(limits)
+                .breeding(breeding)
+                .huntingMode(huntingMode)
+                .rejectionListener(rejectionPrinter());
+        if (limits.isLarge() || breeding != null || huntingMode != HuntingMode.NEIGHBOUR) {
+            builder.pool(ForkJoinPool.commonPool());
+        }
+        Simulation simulation;
+        try {
+            simulation = builder.build();
+        } catch (Exception e) {
+            output.println(describeError(e));
+            return;
+        }
+        simulation.run();
+        PopulationStore population = simulation.getPopulation();
+        for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+            output.println(population.getType(i).getSound());
         }
-        Main.grassAmount = grassAmount;
     }
 
     /**
-     * Gets the number of animals.
-     * @return the number of animals.
+     * @return a listener printing the message of every rejected hunt with {@code --verbose}, or
+     *         null if rejected hunts are only counted.
      */
-    public static int getNoAnimals() {
-        return noAnimals;
+    private Consumer<HuntOutcome> rejectionPrinter() {
+        return verbose ? outcome -> output.println(outcome.getMessage()) : null;
     }
 
     /**
-     * Sets the number of animals.
-     * @param noAnimals the number of animals.
+     * Simulates the input file as an {@link Ecosystem} of regions and prints the sounds of the
+     * surviving animals of every region after a {@code == Region <number>} header, then the hunt
+     * outcome counts of every region together.
+     * @param regions           the number of regions.
+     * @param migrationInterval the number of days between two migrations.
+     * @param migrationRate     the fraction of the animals of a region that leave it at every migration.
+     * @throws Exception for simulation errors other than invalid inputs.
      */
-    public static void setNoAnimals(int noAnimals) throws InvalidInputsException {
-        // Throw invalid input if not positive integer
-        if (noAnimals < 1) {
-            throw new InvalidInputsException();
+    private void runRegions(int regions, int migrationInterval, double migrationRate) throws Exception {
+        Scenario scenario;
+        Ecosystem ecosystem;
+        try {
+            scenario = Scenario.read(Paths.get("input.txt"), species, limits);
+            ecosystem = new Ecosystem(scenario.getGrassAmount(), scenario.getPopulation(), regions,
+                    migrationInterval, migrationRate, ForkJoinPool.commonPool());
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            output.println(describeError(e));
+            return;
+        }
+        ecosystem.run(scenario.getDays());
+        for (int r = 0; r < ecosystem.getRegionCount(); r++) {
+            output.println("== Region " + r);
+            PopulationStore population = ecosystem.getPopulation(r);
+            for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+                output.println(population.getType(i).getSound());
+            }
         }
-        Main.noAnimals = noAnimals;
+        output.println(ecosystem.getHuntMetrics().toString());
     }
 
     /**
-     * Main method to run the simulation.
-     * @param args command-line arguments.
-     * @throws Exception for various simulation errors.
+     * Simulates the input file on a landscape with a {@link SpatialEngine} and prints the sounds
+     * of the surviving animals, then the hunt outcome counts. Every cell starts with the initial
+     * grass of the input file, and the animals are placed uniformly at random, where they stay.
+     * @param columns the width of the landscape, in cells.
+     * @param rows    the height of the landscape, in cells.
+     * @param radius  how far away a hunter finds its prey.
+     * @param seed    the seed of the placement.
+     * @throws Exception for simulation errors other than invalid inputs.
      */
-    public static void main(String[] args) throws InvalidInputsException, InvalidNumberOfAnimalParametersException, Exception {
-        ArrayList<Animal> animals = readAnimals();
-        removeDeadAnimals(animals);
-        runSimulation(days, grassAmount, animals);
-        printAnimals(animals);
+    private void runSpatial(int columns, int rows, float radius, long seed) throws Exception {
+        Scenario scenario;
+        GrassGrid grid;
+        try {
+            scenario = Scenario.read(Paths.get("input.txt"), species, limits);
+            grid = new GrassGrid(columns, rows, scenario.getGrassAmount());
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            output.println(describeError(e));
+            return;
+        }
+        PopulationStore population = scenario.getPopulation();
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+            population.setPosition(i, (float) random.nextDouble(columns), (float) random.nextDouble(rows));
+        }
+        SpatialEngine engine = new SpatialEngine(population, grid, radius);
+        engine.runSimulation(scenario.getDays());
+        for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+            output.println(population.getType(i).getSound());
+        }
+        output.println(engine.getHuntMetrics().toString());
     }
 
     /**
-     * Reads animal data from the input file and creates a list of Animal objects.
-     * @return a list of Animal objects.
-     * @throws Exception for invalid inputs or data errors.
+     * Simulates the input file on the columnar engine, saving a snapshot periodically.
+     * If the snapshot already exists, the simulation resumes from it instead.
+     * @param snapshot the snapshot file.
+     * @param interval the number of days between snapshots.
+     * @throws Exception if the snapshot cannot be written.
      */
-    private static ArrayList<Animal> readAnimals() throws Exception {
-        ArrayList<Animal> animals = new ArrayList<>();
-        String filePath = "input.txt";
-        final int maxLength = 4;
-
-        // Check if the file is empty
-        if (new File(filePath).length() == 0) {
-            throw new InvalidInputsException();
+    private void runWithCheckpoints(Path snapshot, int interval) throws Exception {
+        PopulationStore population;
+        try {
+            population = new CheckpointRunner(snapshot, interval, limits).run(Paths.get("input.txt"));
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            output.println(describeError(e));
+            return;
         }
+        for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+            output.println(population.getType(i).getSound());
+        }
+    }
 
-        try (Scanner scanner = new Scanner(new File(filePath))) {
-            setDays(Integer.parseInt(scanner.nextLine().trim())); // Read first line
-            if (getDays() < MIN_DAYS || getDays() > MAX_DAYS) {
-                throw new InvalidInputsException();
-            }
+    /**
+     * Simulates the input file on the columnar engine, streaming the metrics of every day to a
+     * file and to Java Flight Recorder.
+     * @param file the metrics file, written as JSON lines if its name ends with {@code .json}.
+     * @throws IOException if the metrics cannot be written.
+     */
+    private void runWithMetrics(Path file) throws IOException {
+        Scenario scenario;
+        Field field;
+        try {
+            scenario = Scenario.read(Paths.get("input.txt"), species, limits);
+            field = new Field(scenario.getGrassAmount());
+        } catch (Exception e) {
+            output.println(describeError(e));
+            return;
+        }
+        PopulationStore population = scenario.getPopulation();
+        PopulationEngine engine = new PopulationEngine(population, field);
+        SimulationMetrics metrics = new SimulationMetrics();
+        metrics.addExporter(new JfrMetricsExporter());
+        try (MetricsStreamWriter writer = MetricsStreamWriter.open(file)) {
+            metrics.addExporter(writer);
+            engine.setMetrics(metrics);
+            engine.runSimulation(scenario.getDays());
+        }
+        for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+            output.println(population.getType(i).getSound());
+        }
+    }
 
-            setGrassAmount(Float.parseFloat(scanner.nextLine().replace("F", "").trim())); // Read second line
-            if (getGrassAmount() < MIN_AMOUNT_GRASS || getGrassAmount() > MAX_AMOUNT_GRASS) {
-                throw new GrassOutOfBoundsException();
+    /**
+     * Runs stochastic replicas of the input file and prints their statistics.
+     * @param replicas the number of replicas.
+     * @param options  {@code hunt=<probability of success>}, {@code growth=<variation of the
+     *                 grass growth>}, {@code shuffle} to shuffle the turn order and {@code seed=<n>}.
+     * @throws Exception if a replica fails.
+     */
+    private void runEnsemble(int replicas, String[] options) throws Exception {
+        double huntSuccess = 1;
+        double growthVariation = 0;
+        boolean shuffle = false;
+        long seed = 0;
+        for (String option : options) {
+            if (option.startsWith("hunt=")) {
+                huntSuccess = Double.parseDouble(option.substring("hunt=".length()));
+            } else if (option.startsWith("growth=")) {
+                growthVariation = Double.parseDouble(option.substring("growth=".length()));
+            } else if (option.equals("shuffle")) {
+                shuffle = true;
+            } else if (option.startsWith("seed=")) {
+                seed = Long.parseLong(option.substring("seed=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown ensemble option " + option);
             }
+        }
+        StochasticRules rules = new StochasticRules(huntSuccess, growthVariation, shuffle);
+        Scenario scenario;
+        try {
+            scenario = Scenario.read(Paths.get("input.txt"), species, limits);
+        } catch (Exception e) {
+            output.println(describeError(e));
+            return;
+        }
+        EnsembleRunner.main(scenario, replicas, rules, seed, output);
+    }
 
-            setNoAnimals(Integer.parseInt(scanner.nextLine().trim())); // Read third line
-            if (getNoAnimals() < MIN_NO_ANIMALS || getNoAnimals() > MAX_NO_ANIMALS) {
-                throw new InvalidInputsException();
+    /**
+     * Simulates the input file on the reference loop or the columnar engine, logging every event.
+     * Both print the rejected hunts as the default mode does, then the surviving animals.
+     * @param file   the event log file.
+     * @param engine {@code reference} for the object loop or {@code columnar} for {@link PopulationEngine}.
+     * @throws Exception if the log cannot be written.
+     */
+    private void runWithEventLog(Path file, String engine) throws Exception {
+        if (!engine.equals("reference") && !engine.equals("columnar")) {
+            throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+        Scenario scenario;
+        Field field;
+        try {
+            scenario = Scenario.read(Paths.get("input.txt"), species, limits);
+            field = new Field(scenario.getGrassAmount());
+        } catch (Exception e) {
+            output.println(describeError(e));
+            return;
+        }
+        PopulationStore population = scenario.getPopulation();
+        population.removeDead();
+        try (EventLog log = EventLog.create(file, scenario.getDays(), scenario.getGrassAmount(), population)) {
+            if (engine.equals("reference")) {
+                ArrayList<Animal> animals = population.toAnimals();
+                HuntMetrics huntMetrics = new HuntMetrics();
+                runSimulation(scenario.getDays(), scenario.getGrassAmount(), animals, huntMetrics, log,
+                        rejectionPrinter());
+                printAnimals(animals);
+                return;
             }
+            PopulationEngine columnar = new PopulationEngine(population, field);
+            columnar.setEventLog(log);
+            columnar.setRejectionListener(rejectionPrinter());
+            columnar.runSimulation(scenario.getDays());
+        }
+        for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+            output.println(population.getType(i).getSound());
+        }
+    }
 
-            for (int i = 0; i < getNoAnimals(); i++) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) {
-                    throw new InvalidNumberOfAnimalParametersException();
-                }
-
-                String[] animalProps = line.split("\\s+");
-                if (animalProps.length != maxLength) {
-                    throw new InvalidNumberOfAnimalParametersException();
-                }
-
-                String type = animalProps[0];
-                // Check if the animal type is valid
-                if (!type.equals("Lion") && !type.equals("Boar") && !type.equals("Zebra")) {
-                    throw new InvalidInputsException();
-                }
-
-                float weight;
-                float speed;
-                float energy;
-                try {
-                weight = Float.parseFloat(animalProps[1].replace("F", "").trim());
-                speed = Float.parseFloat(animalProps[2].replace("F", "").trim());
-                energy = Float.parseFloat(animalProps[maxLength - 1].replace("F", "").trim());
-                } catch (NumberFormatException e) {
-                    throw new InvalidInputsException();
-                }
-
-                if (weight < MIN_WEIGHT || weight > MAX_WEIGHT) { // validate weight
-                    throw new WeightOutOfBoundsException();
-                }
-
-                if (speed < MIN_SPEED || speed > MAX_SPEED) { // validate speed
-                    throw new SpeedOutOfBoundsException();
-                }
-
-                if (energy < MIN_ENERGY || energy > MAX_ENERGY) {
-                    throw new EnergyOutOfBoundsException();
-                }
-                switch (type) {
-                    case "Lion":
-                        animals.add(new Lion(weight, speed, energy));
-                        break;
-                    case "Boar":
-                        animals.add(new Boar(weight, speed, energy));
-                        break;
-                    case "Zebra":
-                        animals.add(new Zebra(weight, speed, energy));
-                        break;
-                    default:
-                        throw new InvalidInputsException();
-                }
+    /**
+     * Simulates the input file on a separate thread, printing the latest published snapshot of
+     * the simulation periodically while it runs, then the sounds of the surviving animals.
+     * If the simulation fails, its failure is rethrown once the thread has ended and nothing
+     * more is printed.
+     * @param interval the number of milliseconds between summaries.
+     * @throws Exception if interrupted while waiting for the simulation, or the failure of the
+     *                   simulation.
+     */
+    private void runWatched(long interval) throws Exception {
+        Scenario scenario;
+        Field field;
+        try {
+            scenario = Scenario.read(Paths.get("input.txt"), species, limits);
+            field = new Field(scenario.getGrassAmount());
+        } catch (Exception e) {
+            output.println(describeError(e));
+            return;
+        }
+        PopulationStore population = scenario.getPopulation();
+        ParallelPopulationEngine engine = new ParallelPopulationEngine(population, field, ForkJoinPool.commonPool());
+        DaySnapshotPublisher snapshots = new DaySnapshotPublisher();
+        engine.setSnapshotPublisher(snapshots);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread simulation = new Thread(() -> {
+            try {
+                engine.runSimulation(scenario.getDays());
+            } catch (Throwable e) {
+                failure.set(e);
             }
-            // any extra line will throw an exception
-            if (scanner.hasNextLine()) {
-                throw new InvalidInputsException();
+        }, "simulation");
+        simulation.start();
+        DaySnapshot shown = null;
+        do {
+            simulation.join(Math.max(interval, 1));
+            DaySnapshot latest = snapshots.getLatest(); // Read without stopping the simulation
+            if (failure.get() == null && latest != null && latest != shown) {
+                output.println(latest.toString());
+                shown = latest;
             }
+        } while (simulation.isAlive());
+        Throwable cause = failure.get();
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        if (cause != null) {
+            throw (RuntimeException) cause;
+        }
+        for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+            output.println(population.getType(i).getSound());
+        }
+    }
 
-        } catch (Exception e) {
-            // check if the exception is a custom exception
-            if (e instanceof InvalidNumberOfAnimalParametersException
-                || e instanceof GrassOutOfBoundsException
-                || e instanceof WeightOutOfBoundsException
-                || e instanceof SpeedOutOfBoundsException
-                || e instanceof EnergyOutOfBoundsException) {
-                System.out.println(e.getMessage());
-            } else {
-                System.out.println("Invalid inputs");
+    /**
+     * Prints the replayed state of a simulation: the day and grass amount, then one
+     * tab-separated line per living animal (identifier, species, weight, speed and energy).
+     * @param replay the replayed state.
+     */
+    private void printReplay(EventReplay replay) {
+        output.println("day " + replay.getDay() + " of " + replay.getDays()
+                + ", grass " + replay.getGrassAmount() + ", " + replay.getEvents() + " events");
+        for (int i = 0; i < replay.size(); i++) {
+            if (replay.isAlive(i)) {
+                output.println(replay.getId(i) + "\t" + species.get(replay.getSpecies(i)).getName()
+                        + "\t" + replay.getWeight(i) + "\t" + replay.getSpeed(i) + "\t" + replay.getEnergy(i));
             }
-            System.exit(0);
         }
-        return animals;
     }
 
     /**
-     * Runs the simulation based on the validated input parameters.
+     * Prints the first differences between two event logs, or that they are identical.
+     * @param first  a log file.
+     * @param second another log file.
+     * @throws IOException if a log cannot be read.
+     */
+    private void printDiff(Path first, Path second) throws IOException {
+        List<String> differences = EventLogDiff.diff(first, second, 10);
+        if (differences.isEmpty()) {
+            output.println("Identical event logs");
+        }
+        differences.forEach(output::println);
+    }
+
+    /**
+     * Describes an input error the way it is reported to the user.
+     * @param e the error.
+     * @return the message of a custom exception, or "Invalid inputs" for any other error.
+     */
+    static String describeError(Exception e) {
+        // check if the exception is a custom exception
+        if (e instanceof InvalidNumberOfAnimalParametersException
+            || e instanceof GrassOutOfBoundsException
+            || e instanceof WeightOutOfBoundsException
+            || e instanceof SpeedOutOfBoundsException
+            || e instanceof EnergyOutOfBoundsException) {
+            return e.getMessage();
+        }
+        return new InvalidInputsException().getMessage();
+    }
+
+    /**
+     * Runs the simulation based on the validated input parameters, logging every event.
      * @param days        number of simulation days.
      * @param grassAmount initial amount of grass in the field.
-     * @param animals     list of animals participating in the simulation.
+     * @param animals     list of animals participating in the simulation, identified in the log
+     *                    by their position in it.
+     * @param huntMetrics the metrics collecting the outcome of every hunt.
+     * @param log         the event log, or null.
+     * @param rejections  receives the outcome of every rejected hunt, or null.
+     * @throws GrassOutOfBoundsException if the grass amount is out of bounds.
      */
-    private static void runSimulation(int days, float grassAmount, ArrayList<Animal> animals) {
-        Field field;
-        try {
-            field = new Field(grassAmount);
-        } catch (GrassOutOfBoundsException e) {
-            System.out.println(e.getMessage());
-            return;
+    private static void runSimulation(int days, float grassAmount, ArrayList<Animal> animals,
+                                      HuntMetrics huntMetrics, EventLog log, Consumer<HuntOutcome> rejections)
+            throws GrassOutOfBoundsException {
+        Map<Animal, Integer> ids = new IdentityHashMap<>();
+        if (log != null) {
+            for (int i = 0; i < animals.size(); i++) {
+                ids.put(animals.get(i), i);
+            }
         }
+        Field field = new Field(grassAmount);
 
         for (int currentDay = 1; currentDay <= days; currentDay++) {
             if (animals.isEmpty()) {
                 break;
             }
+            simulateDay(animals, field, huntMetrics, log, ids, rejections);
+            if (log != null) {
+                log.dayEnd(currentDay, field.getGrassAmount());
+            }
+        }
+    }
 
-            for (int i = 0; i < animals.size(); i++) {
-                Animal currentAnimal = animals.get(i);
-                Animal prey = animals.get((i + 1) % animals.size()); // Circular prey selection
+    /**
+     * Simulates one day of the animal objects: every living animal eats in list order, then the
+     * day ends. Behaviour is dispatched on the flags of each animal's species to the static rules
+     * of {@link Herbivore} and {@link Carnivore}, so a day allocates nothing unless it is logged.
+     * @param animals     list of animals participating in the simulation.
+     * @param field       the field environment.
+     * @param huntMetrics the metrics collecting the outcome of every hunt.
+     * @param log         the event log, or null.
+     * @param ids         the identifiers of the animals in the log.
+     * @param rejections  receives the outcome of every rejected hunt, or null.
+     */
+    static void simulateDay(ArrayList<Animal> animals, Field field, HuntMetrics huntMetrics, EventLog log,
+                            Map<Animal, Integer> ids, Consumer<HuntOutcome> rejections) {
+        for (int i = 0; i < animals.size(); i++) {
+            Animal currentAnimal = animals.get(i);
+            Animal prey = animals.get((i + 1) % animals.size()); // Circular prey selection
 
-                if (currentAnimal.getEnergy() <= 0) {
-                    continue;
-                }
+            if (currentAnimal.getEnergy() <= 0) {
+                continue;
+            }
 
-                if (currentAnimal instanceof Herbivore) {
-                    ((Herbivore) currentAnimal).grazeInTheField(currentAnimal, field);
+            SpeciesType type = currentAnimal.getSpeciesType();
+            if (type.grazes()) {
+                float need = currentAnimal.getWeight() / Constants.GRAZE_ENERGY_DIVISOR.getValue();
+                if (log != null) {
+                    log.graze(ids.get(currentAnimal), field.getGrassAmount() >= need, need);
                 }
+                Herbivore.graze(currentAnimal, field);
+            }
 
-                if (currentAnimal instanceof Carnivore) {
-                    Carnivore carnivore = (Carnivore) currentAnimal;
-                    try {
-                        Animal chosenPrey = carnivore
-                        .choosePrey(Collections
-                        .singletonList(prey), new T<>(currentAnimal));
-                        if (chosenPrey != null) {
-                            carnivore.huntPrey(currentAnimal, chosenPrey);
-                        }
-                    } catch (Exception e) {
-                        System.out.println(e.getMessage());
-                    }
+            if (type.hunts()) {
+                HuntOutcome outcome = Carnivore.attack(currentAnimal, prey);
+                huntMetrics.record(outcome);
+                if (log != null) {
+                    log.hunt(ids.get(currentAnimal), ids.get(prey), outcome,
+                            outcome == HuntOutcome.SUCCESS ? prey.getWeight() : 0);
+                }
+                if (rejections != null && outcome.isRejection()) {
+                    rejections.accept(outcome);
                 }
             }
+        }
 
-            field.makeGrassGrow(); // Grass grows at the end of each day
-            animals.forEach(Animal::decrementEnergy); // Energy decreases by 1% at the end of each day
-            removeDeadAnimals(animals); // Remove dead animals at the end of each day
+        for (int i = 0; i < animals.size(); i++) {
+            Animal animal = animals.get(i);
+            if (log != null && animal.getEnergy() <= 1) { // Left without energy by the decrease below
+                log.death(ids.get(animal));
+            }
+            animal.decrementEnergy(); // Energy decreases by 1% at the end of each day
         }
+        field.makeGrassGrow(); // Grass grows at the end of each day
+        removeDeadAnimals(animals); // Remove dead animals at the end of each day
     }
 
     /**
-     * Removes animals with zero or negative energy from the list.
+     * Removes animals with zero or negative energy from the list, keeping the order of the others.
      * @param animals the list of animals.
      */
-    private static void removeDeadAnimals(ArrayList<Animal> animals) {
-        animals.removeIf(animal -> animal.getEnergy() <= 0);
+    static void removeDeadAnimals(ArrayList<Animal> animals) {
+        int kept = 0;
+        for (int i = 0; i < animals.size(); i++) {
+            Animal animal = animals.get(i);
+            if (animal.getEnergy() > 0) {
+                animals.set(kept++, animal);
+            }
+        }
+        for (int i = animals.size() - 1; i >= kept; i--) {
+            animals.remove(i); // Removing from the end shifts nothing
+        }
     }
 
     /**
      * Prints the sounds of all animals that survived the simulation.
      * @param animals the list of animals.
      */
-    private static void printAnimals(ArrayList<Animal> animals) {
-        animals.stream()
-                .filter(animal -> animal.getEnergy() > 0)
-                .forEach(Animal::makeSound);
+    private void printAnimals(ArrayList<Animal> animals) {
+        for (Animal animal : animals) {
+            if (animal.getEnergy() <= 0) {
+                continue;
+            }
+            AnimalSound sound = animal.getSound();
+            if (sound != null) {
+                output.println(sound);
+            } else {
+                output.println(animal.getSpeciesType().getSound()); // A configured species
+            }
+        }
     }
 }
 
@@ -305,11 +725,127 @@ enum Constants {
     }
 }
 
+/**
+ * Limits on the size of a scenario: how many days it may last and how many animals it may hold.
+ * The standard profile enforces the limits of the original input format; the large profile
+ * lifts them to what the columnar engines handle. Grass, weight, speed and energy keep their
+ * ranges in every profile, since they are rules of the simulation rather than sizes.
+ */
+class SimulationLimits {
+
+    private static final int MIN_DAYS = (int) Constants.MIN_DAYS.getValue();
+    private static final int MIN_NO_ANIMALS = (int) Constants.MIN_NO_ANIMALS.getValue();
+    private static final String PREFIX = "limits.";
+
+    /**
+     * The limits of the original input format: 30 days and 20 animals.
+     */
+    static final SimulationLimits STANDARD = new SimulationLimits(
+            (int) Constants.MAX_DAYS.getValue(), (int) Constants.MAX_NO_ANIMALS.getValue());
+
+    /**
+     * Limits for production-sized runs: 100,000 days and 10 million animals.
+     */
+    static final SimulationLimits LARGE = new SimulationLimits(100_000, 10_000_000);
+
+    private final int maxDays;
+    private final int maxAnimals;
+
+    /**
+     * Creates a profile.
+     *
+     * @param maxDays    the largest number of days of a scenario.
+     * @param maxAnimals the largest number of animals of a scenario.
+     * @throws IllegalArgumentException if a limit is below its minimum, or the animals would not
+     *                                  fit in a {@link PopulationStore}.
+     */
+    public SimulationLimits(int maxDays, int maxAnimals) {
+        if (maxDays < MIN_DAYS || maxAnimals < MIN_NO_ANIMALS || maxAnimals > PopulationStore.MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid limits: " + maxDays + " days, " + maxAnimals + " animals");
+        }
+        this.maxDays = maxDays;
+        this.maxAnimals = maxAnimals;
+    }
+
+    /**
+     * Loads a profile: {@code standard}, {@code large}, or a properties file setting
+     * {@code limits.maxDays} and {@code limits.maxAnimals}, which default to the standard limits.
+     *
+     * @param profile the name of a built-in profile or the path of a properties file.
+     * @return the profile.
+     * @throws IOException            if the file cannot be read.
+     * @throws InvalidInputsException if the file sets anything else or an invalid limit.
+     */
+    public static SimulationLimits load(String profile) throws IOException, InvalidInputsException {
+        if (profile.equals("standard")) {
+            return STANDARD;
+        }
+        if (profile.equals("large")) {
+            return LARGE;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Paths.get(profile), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.equals(PREFIX + "maxDays") && !key.equals(PREFIX + "maxAnimals")) {
+                throw new InvalidInputsException();
+            }
+        }
+        try {
+            return new SimulationLimits(
+                    Integer.parseInt(properties.getProperty(PREFIX + "maxDays", String.valueOf(STANDARD.maxDays)).trim()),
+                    Integer.parseInt(properties.getProperty(PREFIX + "maxAnimals", String.valueOf(STANDARD.maxAnimals)).trim()));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputsException();
+        }
+    }
+
+    /**
+     * @return the largest number of days of a scenario.
+     */
+    public int getMaxDays() {
+        return maxDays;
+    }
+
+    /**
+     * @return the largest number of animals of a scenario.
+     */
+    public int getMaxAnimals() {
+        return maxAnimals;
+    }
+
+    /**
+     * @return whether scenarios may be larger than the standard limits allow, too large to be
+     *         simulated on animal objects or to print every rejected hunt.
+     */
+    public boolean isLarge() {
+        return maxDays > STANDARD.maxDays || maxAnimals > STANDARD.maxAnimals;
+    }
+
+    /**
+     * @param days a number of days.
+     * @return whether a scenario may last that many days.
+     */
+    public boolean allowsDays(int days) {
+        return days >= MIN_DAYS && days <= maxDays;
+    }
+
+    /**
+     * @param animals a number of animals.
+     * @return whether a scenario may hold that many animals.
+     */
+    public boolean allowsAnimals(int animals) {
+        return animals >= MIN_NO_ANIMALS && animals <= maxAnimals;
+    }
+}
+
 /**
  * Abstract class for Animal objects.
  */
 abstract class Animal {
 
+    private final SpeciesType type;
     private final float weight;
     private final float speed;
     private float energy;
@@ -317,6 +853,7 @@ abstract class Animal {
     /**
      * Constructor to create Animal objects.
      *
+     * @param type   the species of the animal.
      * @param weight the weight of the animal.
      * @param speed  the speed of the animal.
      * @param energy the energy of the animal.
@@ -324,7 +861,7 @@ abstract class Animal {
      * @throws SpeedOutOfBoundsException  if speed is out of bounds.
      * @throws EnergyOutOfBoundsException if energy is out of bounds.
      */
-    protected Animal(float weight, float speed, float energy)
+    protected Animal(SpeciesType type, float weight, float speed, float energy)
             throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
 
         if (weight < Constants.MIN_WEIGHT.getValue() || weight > Constants.MAX_WEIGHT.getValue()) {
@@ -337,11 +874,19 @@ abstract class Animal {
             throw new EnergyOutOfBoundsException();
         }
 
+        this.type = type;
         this.weight = weight;
         this.speed = speed;
         this.energy = energy;
     }
 
+    /**
+     * @return the species of the animal.
+     */
+    public SpeciesType getSpeciesType() {
+        return type;
+    }
+
     /**
      * @return the animal's weight.
      */
@@ -386,18 +931,13 @@ abstract class Animal {
         this.energy = 0;
     }
 
-    /**s
-     * Makes the animal's sound. Implementation is species-specific.
-     */
-    public abstract void makeSound();
-
     /**
-     * Defines species-specific feeding behavior.
+     * Gets the animal's sound. Implementation is species-specific.
      *
-     * @param animals a list of animals.
-     * @param field   the field environment.
+     * @return the sound the animal makes, or null for a species configured in a
+     *         {@link SpeciesRegistry}, whose sound is the text of {@link SpeciesType#getSound()}.
      */
-    public abstract void eat(List<Animal> animals, Field field);
+    public abstract AnimalSound getSound();
 }
 
 
@@ -421,31 +961,101 @@ interface Carnivore {
 
         Animal prey = animals.get(0);
 
-        if (prey.getEnergy() <= 0) { // Skip dead animals
-            return null;
-        }
-        if (prey == hunter.getAnimal()) { // Self-hunting is not allowed
-            throw new SelfHuntingException();
-        }
-        // Cannibalism is not allowed
-        if (prey.getClass().getSimpleName()
-                .equals(hunter.getAnimal().getClass().getSimpleName())) {
-            throw new CannibalismException();
+        switch (assessPrey(hunter.getAnimal(), prey)) {
+            case PREY_DEAD:
+            case NOT_PREY:
+                return null;
+            case SELF_HUNTING:
+                throw new SelfHuntingException();
+            case CANNIBALISM:
+                throw new CannibalismException();
+            case TOO_STRONG:
+                throw new TooStrongPreyException();
+            default:
+                return prey;
         }
-        if (prey.getSpeed() >= hunter.getAnimal().getSpeed()
-            && prey.getEnergy() >= hunter.getAnimal().getEnergy()) { // Prey is too strong
-            throw new TooStrongPreyException();
-        }
-        return prey;
     }
 
     /**
-     * Attacks prey to increase energy.
+     * Checks whether the predator may attack the prey, without throwing.
      *
      * @param hunter the predator animal.
-     * @param prey   the prey animal.
+     * @param prey   the potential prey.
+     * @return the outcome the attack would have.
      */
-    default void huntPrey(Animal hunter, Animal prey) {
+    default HuntOutcome assessPrey(Animal hunter, Animal prey) {
+        return assess(hunter, prey);
+    }
+
+    /**
+     * Checks whether a hunter may attack a prey, without throwing. Called directly, without an
+     * instance of the interface, by loops that dispatch on {@link SpeciesType#hunts()}.
+     *
+     * @param hunter the predator animal.
+     * @param prey   the potential prey.
+     * @return the outcome the attack would have.
+     */
+    static HuntOutcome assess(Animal hunter, Animal prey) {
+        if (prey.getEnergy() <= 0) { // Skip dead animals
+            return HuntOutcome.PREY_DEAD;
+        }
+        if (prey == hunter) { // Self-hunting is not allowed
+            return HuntOutcome.SELF_HUNTING;
+        }
+        SpeciesType hunterType = hunter.getSpeciesType();
+        SpeciesType preyType = prey.getSpeciesType();
+        if (preyType.getCode() == hunterType.getCode()) { // Cannibalism is not allowed
+            return HuntOutcome.CANNIBALISM;
+        }
+        if (!hunterType.canHunt(preyType)) { // Not part of the hunter's diet
+            return HuntOutcome.NOT_PREY;
+        }
+        if (prey.getSpeed() >= hunter.getSpeed()
+            && prey.getEnergy() >= hunter.getEnergy()) { // Prey is too strong
+            return HuntOutcome.TOO_STRONG;
+        }
+        return HuntOutcome.SUCCESS;
+    }
+
+    /**
+     * Attacks the prey if the rules allow it.
+     *
+     * @param hunter the predator animal.
+     * @param prey   the potential prey.
+     * @return the outcome of the attack.
+     */
+    default HuntOutcome hunt(Animal hunter, Animal prey) {
+        HuntOutcome outcome = assessPrey(hunter, prey);
+        if (outcome == HuntOutcome.SUCCESS) {
+            huntPrey(hunter, prey);
+        }
+        return outcome;
+    }
+
+    /**
+     * Attacks a prey if the rules allow it, as {@link #hunt} does for the built-in species.
+     * Called directly by loops that dispatch on {@link SpeciesType#hunts()}.
+     *
+     * @param hunter the predator animal.
+     * @param prey   the potential prey.
+     * @return the outcome of the attack.
+     */
+    static HuntOutcome attack(Animal hunter, Animal prey) {
+        HuntOutcome outcome = assess(hunter, prey);
+        if (outcome == HuntOutcome.SUCCESS) {
+            prey.die(); // Prey dies
+            hunter.setEnergy(prey.getWeight()); // Hunter gains energy
+        }
+        return outcome;
+    }
+
+    /**
+     * Attacks prey to increase energy.
+     *
+     * @param hunter the predator animal.
+     * @param prey   the prey animal.
+     */
+    default void huntPrey(Animal hunter, Animal prey) {
         prey.die(); // Prey dies
         hunter.setEnergy(prey.getWeight()); // Hunter gains energy
     }
@@ -463,13 +1073,22 @@ interface Herbivore {
      * @param field  the field environment.
      */
     default void grazeInTheField(Animal grazer, Field field) {
-        float grassAmount = field.getGrassAmount();
+        graze(grazer, field);
+    }
+
+    /**
+     * Lets an animal graze in the field. Called directly, without an instance of the interface,
+     * by loops that dispatch on {@link SpeciesType#grazes()}.
+     *
+     * @param grazer the grazing animal.
+     * @param field  the field environment.
+     */
+    static void graze(Animal grazer, Field field) {
         float grazerWeight = grazer.getWeight();
         float energyGained = grazerWeight / Constants.GRAZE_ENERGY_DIVISOR.getValue();
 
-        if (grassAmount >= grazerWeight / Constants.GRAZE_ENERGY_DIVISOR.getValue()) {
+        if (field.claimGrass(energyGained)) { // Grass amount decreases if there is enough
             grazer.setEnergy(energyGained); // Grazer gains energy
-            field.decreaseGrassAmount(energyGained); // Grass amount decreases
         }
     }
 }
@@ -517,12 +1136,119 @@ class Field {
         grassAmount = Math.max(grassAmount - amount, Constants.MIN_AMOUNT_GRASS.getValue());
     }
 
+    /**
+     * Takes an amount of grass if the field holds at least that much.
+     *
+     * @param amount the amount to take.
+     * @return whether the grass was taken.
+     */
+    public boolean claimGrass(float amount) {
+        if (grassAmount < amount) {
+            return false;
+        }
+        decreaseGrassAmount(amount);
+        return true;
+    }
+
     /**
      * Doubles the current grass amount, capped at the maximum allowed value.
      */
     public void makeGrassGrow() {
         grassAmount = Math.min(grassAmount * 2, Constants.MAX_AMOUNT_GRASS.getValue());
     }
+
+    /**
+     * Multiplies the current grass amount by a growth factor, capped at the maximum allowed value.
+     *
+     * @param factor the growth factor, which is 2 in {@link #makeGrassGrow()}.
+     */
+    public void makeGrassGrow(double factor) {
+        grassAmount = (float) Math.min(grassAmount * factor, Constants.MAX_AMOUNT_GRASS.getValue());
+    }
+}
+
+/**
+ * A field whose grass many threads can graze at once without taking a lock.
+ *
+ * <p>The grass amount is kept as the bits of a float in an {@link AtomicInteger}, and every
+ * change is a compare-and-set of the result of the same float arithmetic as {@link Field}, so a
+ * claim fails exactly when the field holds less than the need, as in
+ * {@link Herbivore#grazeInTheField}. Which of several concurrent grazers gets the last of the
+ * grass depends on their timing. Every successful claim writes the same cache line, so claims
+ * serialize on it like on a lock, only without blocking; a claim the field cannot cover only
+ * reads it. As the grass covers a few dozen needs a day, most grazers of a large population are
+ * refused and share the line for reading.
+ */
+class ConcurrentField extends Field {
+
+    private static final float MIN_AMOUNT_GRASS = Constants.MIN_AMOUNT_GRASS.getValue();
+    private static final float MAX_AMOUNT_GRASS = Constants.MAX_AMOUNT_GRASS.getValue();
+
+    private final AtomicInteger grassBits;
+
+    /**
+     * Initializes the field with a specific amount of grass.
+     *
+     * @param grassAmount the initial amount of grass.
+     * @throws GrassOutOfBoundsException if the grass amount is out of bounds.
+     */
+    public ConcurrentField(float grassAmount) throws GrassOutOfBoundsException {
+        super(grassAmount);
+        grassBits = new AtomicInteger(Float.floatToRawIntBits(grassAmount));
+    }
+
+    @Override
+    public float getGrassAmount() {
+        return Float.intBitsToFloat(grassBits.get());
+    }
+
+    @Override
+    public boolean claimGrass(float amount) {
+        while (true) {
+            int bits = grassBits.get();
+            float grassAmount = Float.intBitsToFloat(bits);
+            if (grassAmount < amount) {
+                return false;
+            }
+            float left = Math.max(grassAmount - amount, MIN_AMOUNT_GRASS);
+            if (grassBits.compareAndSet(bits, Float.floatToRawIntBits(left))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void decreaseGrassAmount(float amount) {
+        while (true) {
+            int bits = grassBits.get();
+            float left = Math.max(Float.intBitsToFloat(bits) - amount, MIN_AMOUNT_GRASS);
+            if (grassBits.compareAndSet(bits, Float.floatToRawIntBits(left))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void makeGrassGrow() {
+        while (true) {
+            int bits = grassBits.get();
+            float grown = Math.min(Float.intBitsToFloat(bits) * 2, MAX_AMOUNT_GRASS);
+            if (grassBits.compareAndSet(bits, Float.floatToRawIntBits(grown))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void makeGrassGrow(double factor) {
+        while (true) {
+            int bits = grassBits.get();
+            float grown = (float) Math.min(Float.intBitsToFloat(bits) * factor, MAX_AMOUNT_GRASS);
+            if (grassBits.compareAndSet(bits, Float.floatToRawIntBits(grown))) {
+                return;
+            }
+        }
+    }
 }
 
 /**
@@ -542,24 +1268,28 @@ class Lion extends Animal implements Carnivore {
      */
     public Lion(float weight, float speed, float energy)
             throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
-        super(weight, speed, energy);
+        this(Species.LION.getType(), weight, speed, energy);
     }
 
-    @Override
-    public void makeSound() {
-        System.out.println(AnimalSound.LION.getSound());
+    /**
+     * Creates a new Lion instance as registered in a species registry.
+     *
+     * @param type   the species of the lion.
+     * @param weight the weight of the lion.
+     * @param speed  the speed of the lion.
+     * @param energy the energy of the lion.
+     * @throws WeightOutOfBoundsException if weight is out of bounds.
+     * @throws SpeedOutOfBoundsException  if speed is out of bounds.
+     * @throws EnergyOutOfBoundsException if energy is out of bounds.
+     */
+    public Lion(SpeciesType type, float weight, float speed, float energy)
+            throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
+        super(type, weight, speed, energy);
     }
 
     @Override
-    public void eat(List<Animal> animals, Field field) {
-        try {
-            Animal prey = choosePrey(animals, new T<>(this));
-            if (prey != null) {
-                huntPrey(this, prey);
-            }
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
-        }
+    public AnimalSound getSound() {
+        return AnimalSound.LION;
     }
 }
 
@@ -580,25 +1310,28 @@ class Boar extends Animal implements Omnivore {
      */
     public Boar(float weight, float speed, float energy)
             throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
-        super(weight, speed, energy);
+        this(Species.BOAR.getType(), weight, speed, energy);
     }
 
-    @Override
-    public void makeSound() {
-        System.out.println(AnimalSound.BOAR.getSound());
+    /**
+     * Creates a new Boar instance as registered in a species registry.
+     *
+     * @param type   the species of the boar.
+     * @param weight the weight of the boar.
+     * @param speed  the speed of the boar.
+     * @param energy the energy of the boar.
+     * @throws WeightOutOfBoundsException if weight is out of bounds.
+     * @throws SpeedOutOfBoundsException  if speed is out of bounds.
+     * @throws EnergyOutOfBoundsException if energy is out of bounds.
+     */
+    public Boar(SpeciesType type, float weight, float speed, float energy)
+            throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
+        super(type, weight, speed, energy);
     }
 
     @Override
-    public void eat(List<Animal> animals, Field field) {
-        grazeInTheField(this, field);
-        try {
-            Animal prey = choosePrey(animals, new T<Boar>(this));
-            if (prey != null) {
-                huntPrey(this, prey);
-            }
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
-        }
+    public AnimalSound getSound() {
+        return AnimalSound.BOAR;
     }
 }
 
@@ -619,17 +1352,56 @@ class Zebra extends Animal implements Herbivore {
      */
     public Zebra(float weight, float speed, float energy)
             throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
-        super(weight, speed, energy);
+        this(Species.ZEBRA.getType(), weight, speed, energy);
+    }
+
+    /**
+     * Creates a new Zebra instance as registered in a species registry.
+     *
+     * @param type   the species of the zebra.
+     * @param weight the weight of the zebra.
+     * @param speed  the speed of the zebra.
+     * @param energy the energy of the zebra.
+     * @throws WeightOutOfBoundsException if weight is out of bounds.
+     * @throws SpeedOutOfBoundsException  if speed is out of bounds.
+     * @throws EnergyOutOfBoundsException if energy is out of bounds.
+     */
+    public Zebra(SpeciesType type, float weight, float speed, float energy)
+            throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
+        super(type, weight, speed, energy);
     }
 
     @Override
-    public void makeSound() {
-        System.out.println(AnimalSound.ZEBRA.getSound());
+    public AnimalSound getSound() {
+        return AnimalSound.ZEBRA;
+    }
+}
+
+/**
+ * An animal of a species configured in a {@link SpeciesRegistry} rather than built in.
+ * It grazes and hunts as its species allows.
+ */
+class RegisteredAnimal extends Animal implements Omnivore {
+
+    /**
+     * Creates an animal of a configured species.
+     *
+     * @param type   the species.
+     * @param weight the weight of the animal.
+     * @param speed  the speed of the animal.
+     * @param energy the energy of the animal.
+     * @throws WeightOutOfBoundsException if weight is out of bounds.
+     * @throws SpeedOutOfBoundsException  if speed is out of bounds.
+     * @throws EnergyOutOfBoundsException if energy is out of bounds.
+     */
+    public RegisteredAnimal(SpeciesType type, float weight, float speed, float energy)
+            throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
+        super(type, weight, speed, energy);
     }
 
     @Override
-    public void eat(List<Animal> animals, Field field) {
-        grazeInTheField(this, field);
+    public AnimalSound getSound() {
+        return null; // Configured species make the sound of their SpeciesType
     }
 }
 
@@ -727,7 +1499,7 @@ class SelfHuntingException extends Exception {
      */
     @Override
     public String getMessage() {
-        return "Self-hunting is not allowed";
+        return HuntOutcome.SELF_HUNTING.getMessage();
     }
 }
 
@@ -742,7 +1514,7 @@ class CannibalismException extends Exception {
      */
     @Override
     public String getMessage() {
-        return "Cannibalism is not allowed";
+        return HuntOutcome.CANNIBALISM.getMessage();
     }
 }
 
@@ -756,7 +1528,7 @@ class TooStrongPreyException extends Exception {
      */
     @Override
     public String getMessage() {
-        return "The prey is too strong or too fast to attack";
+        return HuntOutcome.TOO_STRONG.getMessage();
     }
 }
 
@@ -787,6 +1559,208 @@ enum AnimalSound {
     }
 }
 
+/**
+ * Destination of the text the program prints: animal sounds, rejected hunts and errors.
+ *
+ * <p>Lines are buffered and only written out when the buffer fills up, on {@link #flush} and on
+ * {@link #close}, rather than one synchronized and flushed write per line as with
+ * {@code System.out.println}. A sink is not thread-safe: parallel workers collect their results
+ * and a single thread prints them.
+ */
+interface OutputSink extends Closeable, Flushable {
+
+    /**
+     * The size of the buffer of the standard output sink.
+     */
+    int STANDARD_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Writes a line, followed by the line separator of the platform.
+     *
+     * @param line the line.
+     */
+    void println(String line);
+
+    /**
+     * Writes the text of a sound as a line.
+     *
+     * @param sound the sound.
+     */
+    default void println(AnimalSound sound) {
+        println(sound.getSound());
+    }
+
+    /**
+     * Writes out every buffered line.
+     *
+     * @throws IOException if a line could not be written.
+     */
+    @Override
+    void flush() throws IOException;
+
+    /**
+     * @return a sink writing to the standard output in the default charset.
+     */
+    static OutputSink standard() {
+        return new WriterOutputSink(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out),
+                Charset.defaultCharset()), STANDARD_BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a sink writing to a file in UTF-8, replacing any existing one.
+     *
+     * @param path the file.
+     * @return the sink.
+     * @throws IOException if the file cannot be created.
+     */
+    static OutputSink open(Path path) throws IOException {
+        return new ChannelOutputSink(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), STANDARD_BUFFER_SIZE);
+    }
+}
+
+/**
+ * Writes lines through a character buffer of a fixed size into a {@link Writer}.
+ */
+class WriterOutputSink implements OutputSink {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Writer writer;
+    private IOException error;
+
+    /**
+     * Creates a sink.
+     *
+     * @param writer     the destination, which is closed with this sink.
+     * @param bufferSize the number of characters buffered before they are written out.
+     */
+    public WriterOutputSink(Writer writer, int bufferSize) {
+        this.writer = new BufferedWriter(writer, Math.max(bufferSize, 1));
+    }
+
+    @Override
+    public void println(String line) {
+        if (error != null) {
+            return;
+        }
+        try {
+            writer.write(line);
+            writer.write(LINE_SEPARATOR);
+        } catch (IOException e) {
+            error = e; // Reported by flush and close, so a closed pipe does not stop the simulation
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+}
+
+/**
+ * Encodes lines in UTF-8 straight into a direct buffer and writes it to a {@link FileChannel},
+ * without an intermediate character buffer or stream.
+ */
+class ChannelOutputSink implements OutputSink {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private IOException error;
+
+    /**
+     * Creates a sink.
+     *
+     * @param channel    the destination, which is closed with this sink.
+     * @param bufferSize the number of bytes buffered before they are written out.
+     */
+    public ChannelOutputSink(FileChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 16));
+    }
+
+    @Override
+    public void println(String line) {
+        if (error != null) {
+            return;
+        }
+        try {
+            encode(line);
+            encode(LINE_SEPARATOR);
+        } catch (IOException e) {
+            error = e; // Reported by flush and close, so a full disk does not stop the simulation
+        }
+    }
+
+    /**
+     * Encodes text into the buffer, writing the buffer out whenever it fills up.
+     *
+     * @param text the text.
+     * @throws IOException if the buffer cannot be written out.
+     */
+    private void encode(String text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        while (encoder.encode(chars, buffer, true).isOverflow()) {
+            drain();
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the channel.
+     *
+     * @throws IOException if they cannot be written.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (error != null) {
+            throw error;
+        }
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (error == null) {
+                drain();
+            }
+        } finally {
+            channel.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
+
 /**
  * Encapsulates the hunter type (e.g., Lion or Boar).
  *
@@ -812,3 +1786,8226 @@ class T<E extends Animal> {
         return animal;
     }
 }
+
+/**
+ * Outcome of a single hunt attempt, reported without throwing an exception.
+ */
+enum HuntOutcome {
+    SUCCESS(null),
+    PREY_DEAD(null),
+    SELF_HUNTING("Self-hunting is not allowed"),
+    CANNIBALISM("Cannibalism is not allowed"),
+    TOO_STRONG("The prey is too strong or too fast to attack"),
+    NOT_PREY(null),
+    ESCAPED(null);
+
+    private final String message;
+
+    /**
+     * Initializes the outcome with its message.
+     *
+     * @param message the message reported for a rejected hunt, or null.
+     */
+    HuntOutcome(String message) {
+        this.message = message;
+    }
+
+    /**
+     * @return the message reported for a rejected hunt, or null if the hunt was not rejected.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return whether the hunt was rejected by one of the hunting rules.
+     */
+    public boolean isRejection() {
+        return message != null;
+    }
+}
+
+/**
+ * Counts hunt outcomes instead of reporting each one as it happens.
+ */
+class HuntMetrics {
+
+    private static final HuntOutcome[] OUTCOMES = HuntOutcome.values();
+
+    private final long[] counts = new long[OUTCOMES.length];
+
+    /**
+     * Records the outcome of one hunt attempt.
+     *
+     * @param outcome the outcome.
+     */
+    public void record(HuntOutcome outcome) {
+        counts[outcome.ordinal()]++;
+    }
+
+    /**
+     * Records the outcome of several hunt attempts at once.
+     *
+     * @param outcome the outcome.
+     * @param count   the number of attempts.
+     */
+    public void record(HuntOutcome outcome, long count) {
+        counts[outcome.ordinal()] += count;
+    }
+
+    /**
+     * @param outcome the outcome.
+     * @return the number of hunt attempts that had the outcome.
+     */
+    public long getCount(HuntOutcome outcome) {
+        return counts[outcome.ordinal()];
+    }
+
+    /**
+     * @return the number of hunt attempts of every outcome.
+     */
+    public long getAttempts() {
+        long attempts = 0;
+        for (long count : counts) {
+            attempts += count;
+        }
+        return attempts;
+    }
+
+    /**
+     * Adds the counts of other metrics to these.
+     *
+     * @param other the metrics to add.
+     */
+    public void add(HuntMetrics other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    /**
+     * Clears every count.
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (HuntOutcome outcome : OUTCOMES) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(outcome).append('=').append(counts[outcome.ordinal()]);
+        }
+        return builder.toString();
+    }
+}
+
+/**
+ * Collects the per-day metrics of a columnar simulation and hands each finished day to exporters.
+ *
+ * <p>Engines add to the counters as the day goes, from any thread, and publish the day once
+ * it is over. The counters are {@link LongAdder}s, so concurrent recording does not contend.
+ */
+class SimulationMetrics {
+
+    /**
+     * Phases of a simulation day that are timed separately.
+     */
+    enum Phase {
+        TURNS, GRASS_GROWTH, DECAY_AND_REMOVAL, FAST_FORWARD
+    }
+
+    private static final HuntOutcome[] OUTCOMES = HuntOutcome.values();
+    private static final Phase[] PHASES = Phase.values();
+
+    private final LongAdder[] hunts = newAdders(OUTCOMES.length);
+    private final LongAdder grazes = new LongAdder();
+    private final LongAdder grazesSucceeded = new LongAdder();
+    private final DoubleAdder grassConsumed = new DoubleAdder();
+    private final LongAdder deaths = new LongAdder();
+    private final LongAdder[] phaseNanos = newAdders(PHASES.length);
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param count the number of adders.
+     * @return new adders.
+     */
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Registers an exporter that receives every published day.
+     *
+     * @param exporter the exporter.
+     */
+    public void addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+    }
+
+    /**
+     * Records hunt attempts of the current day.
+     *
+     * @param outcome the outcome.
+     * @param count   the number of attempts.
+     */
+    public void recordHunts(HuntOutcome outcome, long count) {
+        if (count != 0) {
+            hunts[outcome.ordinal()].add(count);
+        }
+    }
+
+    /**
+     * Records grazing of the current day.
+     *
+     * @param attempts      the number of animals that tried to graze.
+     * @param successes     the number of animals that found enough grass.
+     * @param grassConsumed the amount of grass eaten.
+     */
+    public void recordGrazes(long attempts, long successes, double grassConsumed) {
+        grazes.add(attempts);
+        grazesSucceeded.add(successes);
+        this.grassConsumed.add(grassConsumed);
+    }
+
+    /**
+     * Records deaths of the current day.
+     *
+     * @param count the number of animals that died.
+     */
+    public void recordDeaths(long count) {
+        deaths.add(count);
+    }
+
+    /**
+     * Records time spent in a phase of the current day.
+     *
+     * @param phase the phase.
+     * @param nanos the elapsed time in nanoseconds.
+     */
+    public void recordPhase(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    /**
+     * Ends the current day, passing what was recorded to every exporter and clearing the counters.
+     *
+     * @param day  the last day covered.
+     * @param days the number of days covered, more than one for fast-forwarded days.
+     * @return the metrics of the day.
+     */
+    public DayMetrics publishDay(int day, int days) {
+        long[] huntCounts = new long[OUTCOMES.length];
+        for (int i = 0; i < huntCounts.length; i++) {
+            huntCounts[i] = hunts[i].sumThenReset();
+        }
+        long[] nanos = new long[PHASES.length];
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = phaseNanos[i].sumThenReset();
+        }
+        DayMetrics metrics = new DayMetrics(day, days, huntCounts, grazes.sumThenReset(),
+            grazesSucceeded.sumThenReset(), grassConsumed.sumThenReset(), deaths.sumThenReset(), nanos);
+        for (MetricsExporter exporter : exporters) {
+            exporter.export(metrics);
+        }
+        return metrics;
+    }
+}
+
+/**
+ * What happened during one simulation day, or during several fast-forwarded ones.
+ */
+class DayMetrics {
+
+    private static final HuntOutcome[] OUTCOMES = HuntOutcome.values();
+    private static final SimulationMetrics.Phase[] PHASES = SimulationMetrics.Phase.values();
+
+    private final int day;
+    private final int days;
+    private final long[] hunts;
+    private final long grazes;
+    private final long grazesSucceeded;
+    private final double grassConsumed;
+    private final long deaths;
+    private final long[] phaseNanos;
+
+    /**
+     * Initializes the metrics of a day.
+     *
+     * @param day             the last day covered.
+     * @param days            the number of days covered.
+     * @param hunts           the number of hunts of each outcome.
+     * @param grazes          the number of grazing attempts.
+     * @param grazesSucceeded the number of grazing attempts that found enough grass.
+     * @param grassConsumed   the amount of grass eaten.
+     * @param deaths          the number of animals that died.
+     * @param phaseNanos      the nanoseconds spent in each phase.
+     */
+    DayMetrics(int day, int days, long[] hunts, long grazes, long grazesSucceeded, double grassConsumed,
+               long deaths, long[] phaseNanos) {
+        this.day = day;
+        this.days = days;
+        this.hunts = hunts;
+        this.grazes = grazes;
+        this.grazesSucceeded = grazesSucceeded;
+        this.grassConsumed = grassConsumed;
+        this.deaths = deaths;
+        this.phaseNanos = phaseNanos;
+    }
+
+    /**
+     * @return the last day covered.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * @return the number of days covered, more than one for days skipped at once by the fast-forward.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @param outcome the outcome.
+     * @return the number of hunts that had the outcome.
+     */
+    public long getHunts(HuntOutcome outcome) {
+        return hunts[outcome.ordinal()];
+    }
+
+    /**
+     * @return the number of hunts attempted.
+     */
+    public long getHuntsAttempted() {
+        long attempted = 0;
+        for (long count : hunts) {
+            attempted += count;
+        }
+        return attempted;
+    }
+
+    /**
+     * @return the number of grazing attempts.
+     */
+    public long getGrazes() {
+        return grazes;
+    }
+
+    /**
+     * @return the number of grazing attempts that found enough grass.
+     */
+    public long getGrazesSucceeded() {
+        return grazesSucceeded;
+    }
+
+    /**
+     * @return the amount of grass eaten.
+     */
+    public double getGrassConsumed() {
+        return grassConsumed;
+    }
+
+    /**
+     * @return the number of animals that died.
+     */
+    public long getDeaths() {
+        return deaths;
+    }
+
+    /**
+     * @param phase the phase.
+     * @return the nanoseconds spent in the phase.
+     */
+    public long getPhaseNanos(SimulationMetrics.Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * @return the names of the columns written by {@link #toCsv}.
+     */
+    public static String csvHeader() {
+        StringBuilder builder = new StringBuilder("day,days,huntsAttempted");
+        for (HuntOutcome outcome : OUTCOMES) {
+            builder.append(",hunts").append(outcome);
+        }
+        builder.append(",grazes,grazesSucceeded,grassConsumed,deaths");
+        for (SimulationMetrics.Phase phase : PHASES) {
+            builder.append(",nanos").append(phase);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the metrics as a line of comma-separated values.
+     */
+    public String toCsv() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(day).append(',').append(days).append(',').append(getHuntsAttempted());
+        for (long count : hunts) {
+            builder.append(',').append(count);
+        }
+        builder.append(',').append(grazes).append(',').append(grazesSucceeded)
+            .append(',').append(grassConsumed).append(',').append(deaths);
+        for (long nanos : phaseNanos) {
+            builder.append(',').append(nanos);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the metrics as a single-line JSON object.
+     */
+    public String toJson() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"day\":").append(day).append(",\"days\":").append(days)
+            .append(",\"huntsAttempted\":").append(getHuntsAttempted()).append(",\"hunts\":{");
+        for (HuntOutcome outcome : OUTCOMES) {
+            if (outcome.ordinal() > 0) {
+                builder.append(',');
+            }
+            builder.append('"').append(outcome).append("\":").append(hunts[outcome.ordinal()]);
+        }
+        builder.append("},\"grazes\":").append(grazes).append(",\"grazesSucceeded\":").append(grazesSucceeded)
+            .append(",\"grassConsumed\":").append(grassConsumed).append(",\"deaths\":").append(deaths)
+            .append(",\"nanos\":{");
+        for (SimulationMetrics.Phase phase : PHASES) {
+            if (phase.ordinal() > 0) {
+                builder.append(',');
+            }
+            builder.append('"').append(phase).append("\":").append(phaseNanos[phase.ordinal()]);
+        }
+        return builder.append("}}").toString();
+    }
+}
+
+/**
+ * Receives the metrics of every simulation day as it is published.
+ */
+interface MetricsExporter {
+
+    /**
+     * @param metrics the metrics of a finished day.
+     */
+    void export(DayMetrics metrics);
+}
+
+/**
+ * Exports every simulation day as a {@link SimulationDayEvent} to Java Flight Recorder.
+ * Events are only built while a recording that enables them is running.
+ */
+class JfrMetricsExporter implements MetricsExporter {
+
+    @Override
+    public void export(DayMetrics metrics) {
+        SimulationDayEvent event = new SimulationDayEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.day = metrics.getDay();
+        event.days = metrics.getDays();
+        event.huntsAttempted = metrics.getHuntsAttempted();
+        event.huntsSucceeded = metrics.getHunts(HuntOutcome.SUCCESS);
+        event.preyDead = metrics.getHunts(HuntOutcome.PREY_DEAD);
+        event.selfHunting = metrics.getHunts(HuntOutcome.SELF_HUNTING);
+        event.cannibalism = metrics.getHunts(HuntOutcome.CANNIBALISM);
+        event.tooStrong = metrics.getHunts(HuntOutcome.TOO_STRONG);
+        event.notPrey = metrics.getHunts(HuntOutcome.NOT_PREY);
+        event.escaped = metrics.getHunts(HuntOutcome.ESCAPED);
+        event.grazes = metrics.getGrazes();
+        event.grazesSucceeded = metrics.getGrazesSucceeded();
+        event.grassConsumed = metrics.getGrassConsumed();
+        event.deaths = metrics.getDeaths();
+        event.turns = metrics.getPhaseNanos(SimulationMetrics.Phase.TURNS);
+        event.grassGrowth = metrics.getPhaseNanos(SimulationMetrics.Phase.GRASS_GROWTH);
+        event.decayAndRemoval = metrics.getPhaseNanos(SimulationMetrics.Phase.DECAY_AND_REMOVAL);
+        event.fastForward = metrics.getPhaseNanos(SimulationMetrics.Phase.FAST_FORWARD);
+        event.commit();
+    }
+}
+
+/**
+ * Flight Recorder event describing one simulation day.
+ */
+@Name("forest.SimulationDay")
+@Label("Simulation Day")
+@Category("Forest Simulator")
+@StackTrace(false)
+class SimulationDayEvent extends Event {
+
+    @Label("Day")
+    int day;
+
+    @Label("Days Covered")
+    int days;
+
+    @Label("Hunts Attempted")
+    long huntsAttempted;
+
+    @Label("Hunts Succeeded")
+    long huntsSucceeded;
+
+    @Label("Prey Already Dead")
+    long preyDead;
+
+    @Label("Self-Hunting Rejections")
+    long selfHunting;
+
+    @Label("Cannibalism Rejections")
+    long cannibalism;
+
+    @Label("Prey Too Strong")
+    long tooStrong;
+
+    @Label("Not Prey")
+    long notPrey;
+
+    @Label("Prey Escaped")
+    long escaped;
+
+    @Label("Grazes")
+    long grazes;
+
+    @Label("Grazes Succeeded")
+    long grazesSucceeded;
+
+    @Label("Grass Consumed")
+    double grassConsumed;
+
+    @Label("Deaths")
+    long deaths;
+
+    @Label("Turns")
+    @Timespan
+    long turns;
+
+    @Label("Grass Growth")
+    @Timespan
+    long grassGrowth;
+
+    @Label("Energy Decay and Dead Removal")
+    @Timespan
+    long decayAndRemoval;
+
+    @Label("Fast-Forward")
+    @Timespan
+    long fastForward;
+}
+
+/**
+ * Writes every simulation day as a line of JSON or CSV.
+ */
+class MetricsStreamWriter implements MetricsExporter, Closeable {
+
+    /**
+     * Formats of the metrics stream.
+     */
+    enum Format {
+        JSON, CSV
+    }
+
+    private final Writer writer;
+    private final Format format;
+    private IOException error;
+
+    /**
+     * Creates a writer, writing the CSV header right away.
+     *
+     * @param writer the destination, which is closed with this writer.
+     * @param format the format of the lines.
+     * @throws IOException if the header cannot be written.
+     */
+    public MetricsStreamWriter(Writer writer, Format format) throws IOException {
+        this.writer = writer;
+        this.format = format;
+        if (format == Format.CSV) {
+            writer.write(DayMetrics.csvHeader());
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Opens a metrics file, in CSV unless its name ends with {@code .json}.
+     *
+     * @param path the file.
+     * @return the writer.
+     * @throws IOException if the file cannot be created.
+     */
+    public static MetricsStreamWriter open(Path path) throws IOException {
+        Format format = path.toString().endsWith(".json") ? Format.JSON : Format.CSV;
+        return new MetricsStreamWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8), format);
+    }
+
+    @Override
+    public void export(DayMetrics metrics) {
+        if (error != null) {
+            return;
+        }
+        try {
+            writer.write(format == Format.JSON ? metrics.toJson() : metrics.toCsv());
+            writer.write('\n');
+        } catch (IOException e) {
+            error = e; // Reported by close, so a full disk does not stop the simulation
+        }
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws IOException if a line or the stream itself could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+}
+
+/**
+ * Immutable summary of a simulation at the end of a day: the grass amount and, per species, the
+ * number of living animals, their mean energy and a histogram of their energies.
+ *
+ * <p>A summary never changes once built, so any thread may read it while the simulation goes on.
+ */
+class DaySnapshot {
+
+    /**
+     * The number of bins of the energy histograms, each covering an equal share of the energy range.
+     */
+    static final int ENERGY_BINS = 10;
+
+    private static final float MAX_ENERGY = Constants.MAX_ENERGY.getValue();
+    private static final float BIN_WIDTH = MAX_ENERGY / ENERGY_BINS;
+
+    private final int day;
+    private final float grassAmount;
+    private final SpeciesRegistry registry;
+    private final int size;
+    private final int[] counts;
+    private final double[] energySums;
+    private final int[] histograms;
+
+    /**
+     * Creates a summary, taking ownership of the arrays.
+     *
+     * @param day         the day that just ended.
+     * @param grassAmount the grass amount at the end of the day.
+     * @param registry    the species of the animals.
+     * @param counts      the number of animals per species.
+     * @param energySums  the total energy per species.
+     * @param histograms  the energy histograms, {@link #ENERGY_BINS} bins per species.
+     */
+    private DaySnapshot(int day, float grassAmount, SpeciesRegistry registry, int[] counts, double[] energySums,
+                        int[] histograms) {
+        this.day = day;
+        this.grassAmount = grassAmount;
+        this.registry = registry;
+        this.counts = counts;
+        this.energySums = energySums;
+        this.histograms = histograms;
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        this.size = total;
+    }
+
+    /**
+     * Summarizes a columnar population in one pass.
+     *
+     * @param day   the day that just ended.
+     * @param field the field.
+     * @param store the animals.
+     * @return the summary.
+     */
+    public static DaySnapshot of(int day, Field field, PopulationStore store) {
+        SpeciesRegistry registry = store.getRegistry();
+        int[] counts = new int[registry.size()];
+        double[] energySums = new double[registry.size()];
+        int[] histograms = new int[registry.size() * ENERGY_BINS];
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            byte species = store.getSpecies(i);
+            float energy = store.getEnergy(i);
+            counts[species]++;
+            energySums[species] += energy;
+            histograms[species * ENERGY_BINS + bin(energy)]++;
+        }
+        return new DaySnapshot(day, field.getGrassAmount(), registry, counts, energySums, histograms);
+    }
+
+    /**
+     * @param energy an energy.
+     * @return the histogram bin it falls in; the maximum energy falls in the last one.
+     */
+    private static int bin(float energy) {
+        return Math.min(Math.max((int) (energy / BIN_WIDTH), 0), ENERGY_BINS - 1);
+    }
+
+    /**
+     * @return the day that just ended, or 0 before the first day.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * @return the grass amount at the end of the day.
+     */
+    public float getGrassAmount() {
+        return grassAmount;
+    }
+
+    /**
+     * @return the species of the animals.
+     */
+    public SpeciesRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return the number of living animals.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param species a species code.
+     * @return the number of living animals of the species.
+     */
+    public int getCount(int species) {
+        return counts[species];
+    }
+
+    /**
+     * @param species a species code.
+     * @return the mean energy of the living animals of the species, or NaN if there are none.
+     */
+    public double getMeanEnergy(int species) {
+        return energySums[species] / counts[species];
+    }
+
+    /**
+     * @param species a species code.
+     * @return the number of living animals of the species in each energy bin, lowest first.
+     */
+    public int[] getEnergyHistogram(int species) {
+        return Arrays.copyOfRange(histograms, species * ENERGY_BINS, (species + 1) * ENERGY_BINS);
+    }
+
+    /**
+     * @return the summary as one line: day, grass, animals, then count and mean energy per species.
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append("day ").append(day).append(", grass ").append(grassAmount).append(", ").append(size)
+                .append(" animals");
+        for (int s = 0; s < counts.length; s++) {
+            if (counts[s] > 0) {
+                line.append(", ").append(registry.get((byte) s).getName()).append(' ').append(counts[s])
+                        .append(String.format(Locale.ROOT, " (energy %.2f)", getMeanEnergy(s)));
+            }
+        }
+        return line.toString();
+    }
+}
+
+/**
+ * Publishes the latest {@link DaySnapshot} of a running simulation to any number of readers.
+ *
+ * <p>The simulation thread builds a new immutable snapshot every few days and swaps it in with a
+ * single volatile write; readers get whichever snapshot is current with a single volatile read.
+ * Neither side ever locks or waits for the other, and an old snapshot stays valid for as long as
+ * a reader holds it.
+ */
+class DaySnapshotPublisher {
+
+    private final int interval;
+    private volatile DaySnapshot latest;
+    private int lastPublished;
+
+    /**
+     * Creates a publisher of a snapshot every day.
+     */
+    public DaySnapshotPublisher() {
+        this(1);
+    }
+
+    /**
+     * Creates a publisher.
+     *
+     * @param interval the number of days between snapshots, so large populations are not
+     *                 summarized every day.
+     */
+    public DaySnapshotPublisher(int interval) {
+        this.interval = Math.max(interval, 1);
+    }
+
+    /**
+     * Called by the simulation thread only.
+     *
+     * @param day the day that just ended.
+     * @return whether a snapshot of that day should be published.
+     */
+    public boolean isDue(int day) {
+        return day - lastPublished >= interval;
+    }
+
+    /**
+     * Makes a snapshot the current one. Called by the simulation thread only.
+     *
+     * @param snapshot the snapshot.
+     */
+    public void publish(DaySnapshot snapshot) {
+        lastPublished = snapshot.getDay();
+        latest = snapshot;
+    }
+
+    /**
+     * May be called from any thread.
+     *
+     * @return the latest snapshot, or null if none was published yet.
+     */
+    public DaySnapshot getLatest() {
+        return latest;
+    }
+}
+
+/**
+ * The built-in species, with their feeding behavior. Their codes are the first ones of every
+ * {@link SpeciesRegistry}.
+ */
+enum Species {
+    LION(AnimalSound.LION, false, true),
+    ZEBRA(AnimalSound.ZEBRA, true, false),
+    BOAR(AnimalSound.BOAR, true, true);
+
+    private static final Species[] VALUES = values();
+
+    private final AnimalSound sound;
+    private final boolean grazes;
+    private final boolean hunts;
+
+    /**
+     * Initializes the species with its sound and feeding behavior.
+     *
+     * @param sound  the sound made by the species.
+     * @param grazes whether the species eats grass.
+     * @param hunts  whether the species hunts prey.
+     */
+    Species(AnimalSound sound, boolean grazes, boolean hunts) {
+        this.sound = sound;
+        this.grazes = grazes;
+        this.hunts = hunts;
+    }
+
+    /**
+     * @return the compact code stored in the population columns.
+     */
+    public byte getCode() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * @return the sound made by the species.
+     */
+    public AnimalSound getSound() {
+        return sound;
+    }
+
+    /**
+     * @return whether the species eats grass.
+     */
+    public boolean grazes() {
+        return grazes;
+    }
+
+    /**
+     * @return whether the species hunts prey.
+     */
+    public boolean hunts() {
+        return hunts;
+    }
+
+    /**
+     * Looks up a species by its compact code.
+     *
+     * @param code the species code.
+     * @return the species.
+     */
+    public static Species fromCode(byte code) {
+        return VALUES[code];
+    }
+
+    /**
+     * @return the name of the species in input files, e.g. "Lion".
+     */
+    public String getName() {
+        return name().charAt(0) + name().substring(1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the species as registered in {@link SpeciesRegistry#DEFAULT}.
+     */
+    public SpeciesType getType() {
+        return SpeciesRegistry.DEFAULT.get(getCode());
+    }
+
+    /**
+     * Creates an animal object of this species.
+     *
+     * @param weight the weight of the animal.
+     * @param speed  the speed of the animal.
+     * @param energy the energy of the animal.
+     * @return the new animal.
+     * @throws WeightOutOfBoundsException if weight is out of bounds.
+     * @throws SpeedOutOfBoundsException  if speed is out of bounds.
+     * @throws EnergyOutOfBoundsException if energy is out of bounds.
+     */
+    public Animal newAnimal(float weight, float speed, float energy)
+            throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
+        return newAnimal(getType(), weight, speed, energy);
+    }
+
+    /**
+     * Creates an animal object of this species as registered in a species registry.
+     *
+     * @param type   the registered species.
+     * @param weight the weight of the animal.
+     * @param speed  the speed of the animal.
+     * @param energy the energy of the animal.
+     * @return the new animal.
+     * @throws WeightOutOfBoundsException if weight is out of bounds.
+     * @throws SpeedOutOfBoundsException  if speed is out of bounds.
+     * @throws EnergyOutOfBoundsException if energy is out of bounds.
+     */
+    public Animal newAnimal(SpeciesType type, float weight, float speed, float energy)
+            throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
+        switch (this) {
+            case LION:
+                return new Lion(type, weight, speed, energy);
+            case ZEBRA:
+                return new Zebra(type, weight, speed, energy);
+            default:
+                return new Boar(type, weight, speed, energy);
+        }
+    }
+}
+
+/**
+ * A species as seen by the simulation: its compact code, name, sound, diet and prey.
+ */
+class SpeciesType {
+
+    private final byte code;
+    private final String name;
+    private final String sound;
+    private final boolean grazes;
+    private final boolean hunts;
+    private final AnimalFactory factory;
+    private long preyMask;
+
+    /**
+     * Initializes a species.
+     *
+     * @param code    the compact code stored in the population columns.
+     * @param name    the name used in input files.
+     * @param sound   the sound made by the species.
+     * @param grazes  whether the species eats grass.
+     * @param hunts   whether the species hunts prey.
+     * @param factory creates animal objects of the species.
+     */
+    SpeciesType(byte code, String name, String sound, boolean grazes, boolean hunts, AnimalFactory factory) {
+        this.code = code;
+        this.name = name;
+        this.sound = sound;
+        this.grazes = grazes;
+        this.hunts = hunts;
+        this.factory = factory;
+    }
+
+    /**
+     * @return the compact code stored in the population columns.
+     */
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * @return the name used in input files.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the sound made by the species.
+     */
+    public String getSound() {
+        return sound;
+    }
+
+    /**
+     * @return whether the species eats grass.
+     */
+    public boolean grazes() {
+        return grazes;
+    }
+
+    /**
+     * @return whether the species hunts prey.
+     */
+    public boolean hunts() {
+        return hunts;
+    }
+
+    /**
+     * @return the set of species codes this species may hunt, one bit per code.
+     */
+    public long getPreyMask() {
+        return preyMask;
+    }
+
+    /**
+     * @param preyMask the set of species codes this species may hunt, one bit per code.
+     */
+    void setPreyMask(long preyMask) {
+        this.preyMask = preyMask;
+    }
+
+    /**
+     * @param prey a species.
+     * @return whether this species may hunt it.
+     */
+    public boolean canHunt(SpeciesType prey) {
+        return (preyMask >>> prey.code & 1) != 0;
+    }
+
+    /**
+     * Creates an animal object of this species.
+     *
+     * @param weight the weight of the animal.
+     * @param speed  the speed of the animal.
+     * @param energy the energy of the animal.
+     * @return the new animal.
+     * @throws WeightOutOfBoundsException if weight is out of bounds.
+     * @throws SpeedOutOfBoundsException  if speed is out of bounds.
+     * @throws EnergyOutOfBoundsException if energy is out of bounds.
+     */
+    public Animal newAnimal(float weight, float speed, float energy)
+            throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
+        return factory.create(this, weight, speed, energy);
+    }
+}
+
+/**
+ * Creates animal objects of a species.
+ */
+interface AnimalFactory {
+
+    /**
+     * @param type   the species.
+     * @param weight the weight of the animal.
+     * @param speed  the speed of the animal.
+     * @param energy the energy of the animal.
+     * @return the new animal.
+     * @throws WeightOutOfBoundsException if weight is out of bounds.
+     * @throws SpeedOutOfBoundsException  if speed is out of bounds.
+     * @throws EnergyOutOfBoundsException if energy is out of bounds.
+     */
+    Animal create(SpeciesType type, float weight, float speed, float energy)
+            throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException;
+}
+
+/**
+ * The species a simulation knows, indexed by their compact code, with their diets and a
+ * predation matrix stored as one bitmask of prey codes per species, so the rules of every
+ * interaction are array lookups.
+ *
+ * <p>The built-in {@link Species} always come first. More species can be configured with a
+ * properties file:
+ * <pre>
+ * species.Hyena.sound=Hihihi
+ * species.Hyena.grazes=false
+ * species.Hyena.hunts=true
+ * species.Hyena.prey=Zebra,Boar
+ * </pre>
+ * A species without a {@code prey} list may hunt every other species. Built-in species only
+ * accept a {@code prey} list. Nobody may hunt its own species.
+ */
+class SpeciesRegistry {
+
+    /** The highest number of species; prey sets are bitmasks of one {@code long}. */
+    static final int MAX_SPECIES = Long.SIZE;
+
+    /** The built-in species only. */
+    static final SpeciesRegistry DEFAULT = defaults();
+
+    private static final String PREFIX = "species.";
+
+    private final List<SpeciesType> types = new ArrayList<>();
+    private final List<byte[]> names = new ArrayList<>();
+    private boolean[] grazes = new boolean[0];
+    private boolean[] hunts = new boolean[0];
+    private long[] preyMasks = new long[0];
+
+    private SpeciesRegistry() {
+    }
+
+    /**
+     * @return a registry of the built-in species, each of which may hunt every other one.
+     */
+    private static SpeciesRegistry defaults() {
+        SpeciesRegistry registry = new SpeciesRegistry();
+        for (Species species : Species.values()) {
+            registry.register(species.getName(), species.getSound().getSound(), species.grazes(), species.hunts(),
+                species::newAnimal);
+        }
+        registry.seal(new long[registry.size()]);
+        return registry;
+    }
+
+    /**
+     * Creates a registry of the built-in species and the species configured in a properties file.
+     * Configured species get codes in the alphabetical order of their names.
+     *
+     * @param path the properties file.
+     * @return the registry.
+     * @throws IOException            if the file cannot be read.
+     * @throws InvalidInputsException if the configuration is invalid.
+     */
+    public static SpeciesRegistry load(Path path) throws IOException, InvalidInputsException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, Map<String, String>> settings = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            if (!key.startsWith(PREFIX) || dot <= PREFIX.length()) {
+                throw new InvalidInputsException();
+            }
+            settings.computeIfAbsent(key.substring(PREFIX.length(), dot), name -> new TreeMap<>())
+                .put(key.substring(dot + 1), properties.getProperty(key).trim());
+        }
+
+        SpeciesRegistry registry = new SpeciesRegistry();
+        for (Species builtIn : Species.values()) {
+            registry.register(builtIn.getName(), builtIn.getSound().getSound(), builtIn.grazes(), builtIn.hunts(),
+                builtIn::newAnimal);
+        }
+        for (Map.Entry<String, Map<String, String>> entry : settings.entrySet()) {
+            Map<String, String> values = entry.getValue();
+            if (registry.find(entry.getKey()) != null) {
+                if (values.size() != 1 || !values.containsKey("prey")) {
+                    throw new InvalidInputsException();
+                }
+                continue;
+            }
+            String sound = values.get("sound");
+            if (sound == null || entry.getKey().isEmpty() || !entry.getKey().trim().equals(entry.getKey())
+                    || !values.keySet().stream().allMatch(k -> k.equals("sound") || k.equals("grazes")
+                        || k.equals("hunts") || k.equals("prey"))
+                    || registry.size() == MAX_SPECIES) {
+                throw new InvalidInputsException();
+            }
+            registry.register(entry.getKey(), sound, Boolean.parseBoolean(values.get("grazes")),
+                Boolean.parseBoolean(values.get("hunts")), RegisteredAnimal::new);
+        }
+
+        long[] preyMasks = new long[registry.size()];
+        for (SpeciesType type : registry.types) {
+            Map<String, String> values = settings.get(type.getName());
+            String prey = values == null ? null : values.get("prey");
+            if (prey == null) {
+                continue;
+            }
+            long mask = 0;
+            for (String name : prey.split(",")) {
+                SpeciesType preyType = registry.find(name.trim());
+                if (preyType == null || preyType == type) {
+                    throw new InvalidInputsException();
+                }
+                mask |= 1L << preyType.getCode();
+            }
+            preyMasks[type.getCode()] = mask;
+        }
+        registry.seal(preyMasks);
+        return registry;
+    }
+
+    /**
+     * Adds a species with the next code.
+     */
+    private void register(String name, String sound, boolean grazes, boolean hunts, AnimalFactory factory) {
+        types.add(new SpeciesType((byte) types.size(), name, sound, grazes, hunts, factory));
+        names.add(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds the lookup tables once every species is registered.
+     *
+     * @param preyMasks the configured prey of each species, or zero where every other species is prey.
+     */
+    private void seal(long[] preyMasks) {
+        int size = types.size();
+        long everyone = size == MAX_SPECIES ? -1L : (1L << size) - 1;
+        grazes = new boolean[size];
+        hunts = new boolean[size];
+        this.preyMasks = new long[size];
+        for (SpeciesType type : types) {
+            int code = type.getCode();
+            long mask = preyMasks[code] != 0 ? preyMasks[code] : everyone & ~(1L << code);
+            type.setPreyMask(mask);
+            grazes[code] = type.grazes();
+            hunts[code] = type.hunts();
+            this.preyMasks[code] = mask;
+        }
+    }
+
+    /**
+     * @return the number of species.
+     */
+    public int size() {
+        return types.size();
+    }
+
+    /**
+     * @param code a species code.
+     * @return the species.
+     */
+    public SpeciesType get(byte code) {
+        return types.get(code);
+    }
+
+    /**
+     * @param name a species name.
+     * @return the species, or null if no species has the name.
+     */
+    public SpeciesType find(String name) {
+        for (SpeciesType type : types) {
+            if (type.getName().equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a species by the UTF-8 bytes of its name, without decoding them.
+     *
+     * @param bytes the buffer.
+     * @param from  the start of the name.
+     * @param to    the end of the name, exclusive.
+     * @return the code of the species, or -1 if no species has the name.
+     */
+    public int find(byte[] bytes, int from, int to) {
+        for (int code = 0; code < names.size(); code++) {
+            byte[] name = names.get(code);
+            if (Arrays.equals(bytes, from, to, name, 0, name.length)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param code a species code.
+     * @return whether the species eats grass.
+     */
+    public boolean grazes(byte code) {
+        return grazes[code];
+    }
+
+    /**
+     * @param code a species code.
+     * @return whether the species hunts prey.
+     */
+    public boolean hunts(byte code) {
+        return hunts[code];
+    }
+
+    /**
+     * @param code a species code.
+     * @return the set of species codes the species may hunt, one bit per code.
+     */
+    public long getPreyMask(byte code) {
+        return preyMasks[code];
+    }
+
+    /**
+     * @param hunter the species code of the hunter.
+     * @param prey   the species code of the prey.
+     * @return whether the hunter's species may hunt the prey's.
+     */
+    public boolean canHunt(byte hunter, byte prey) {
+        return (preyMasks[hunter] >>> prey & 1) != 0;
+    }
+}
+
+/**
+ * Stores a population as parallel primitive columns instead of one object per animal.
+ * The position of an animal in the columns is its position in the circular queue.
+ *
+ * <p>Dead animals are not shifted out at the end of every day. Their slots are marked in a
+ * tombstone bitset and skipped when walking the queue, and the columns are compacted only once
+ * more than half of the slots are tombstones, so removing an animal costs O(1) amortized.
+ * Animals killed during a day keep their slot until the day ends, so every hunter still sees
+ * the neighbour it had at the start of the day. Newborns always join the end of the queue, in
+ * the order of their parents; the store is compacted first when they would otherwise grow the
+ * columns, so a population whose births balance its deaths neither grows nor allocates.
+ */
+class PopulationStore {
+
+    /**
+     * The largest number of slots of a store, small enough that no index computation overflows.
+     */
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float MIN_WEIGHT = Constants.MIN_WEIGHT.getValue();
+    private static final float MAX_WEIGHT = Constants.MAX_WEIGHT.getValue();
+    private static final float MIN_SPEED = Constants.MIN_SPEED.getValue();
+    private static final float MAX_SPEED = Constants.MAX_SPEED.getValue();
+    private static final float MIN_ENERGY = Constants.MIN_ENERGY.getValue();
+    private static final float MAX_ENERGY = Constants.MAX_ENERGY.getValue();
+
+    private final SpeciesRegistry registry;
+    private byte[] species;
+    private float[] weight;
+    private float[] speed;
+    private float[] energy;
+    private float[] x;
+    private float[] y;
+    private int[] ids;
+    private int nextId;
+    private long[] tombstones;
+    private int slots;
+    private int buried;
+
+    /**
+     * Creates an empty store with a default capacity.
+     */
+    public PopulationStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty store of built-in species able to hold the given number of animals
+     * without growing.
+     *
+     * @param capacity the initial capacity.
+     */
+    public PopulationStore(int capacity) {
+        this(capacity, SpeciesRegistry.DEFAULT);
+    }
+
+    /**
+     * Creates an empty store able to hold the given number of animals without growing.
+     *
+     * @param capacity the initial capacity.
+     * @param registry the species the animals may belong to.
+     * @throws IllegalArgumentException if the capacity is above {@link #MAX_CAPACITY}.
+     */
+    public PopulationStore(int capacity, SpeciesRegistry registry) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("A population holds at most " + MAX_CAPACITY + " animals");
+        }
+        this.registry = registry;
+        int initial = Math.max(capacity, 1);
+        species = new byte[initial];
+        weight = new float[initial];
+        speed = new float[initial];
+        energy = new float[initial];
+        tombstones = new long[wordsFor(initial)];
+    }
+
+    /**
+     * Copies a list of animal objects into a new store, keeping their order.
+     *
+     * @param animals the animals to copy.
+     * @return the new store.
+     * @throws Exception if an animal is of an unknown type or has invalid properties.
+     */
+    public static PopulationStore fromAnimals(List<Animal> animals) throws Exception {
+        PopulationStore store = new PopulationStore(animals.size());
+        for (Animal animal : animals) {
+            store.add(animal.getSpeciesType().getCode(), animal.getWeight(), animal.getSpeed(), animal.getEnergy());
+        }
+        return store;
+    }
+
+    /**
+     * Creates animal objects for every animal in the store, keeping their order.
+     *
+     * @return the list of animals.
+     * @throws Exception if an animal has invalid properties.
+     */
+    public ArrayList<Animal> toAnimals() throws Exception {
+        ArrayList<Animal> animals = new ArrayList<>(size());
+        for (int i = nextLive(-1); i >= 0; i = nextLive(i)) {
+            animals.add(registry.get(species[i]).newAnimal(weight[i], speed[i], energy[i]));
+        }
+        return animals;
+    }
+
+    /**
+     * Appends an animal to the end of the circular queue, after every slot in use.
+     *
+     * @param type   the species of the animal.
+     * @param weight the weight of the animal.
+     * @param speed  the speed of the animal.
+     * @param energy the energy of the animal.
+     * @return the index of the new animal.
+     * @throws WeightOutOfBoundsException if weight is out of bounds.
+     * @throws SpeedOutOfBoundsException  if speed is out of bounds.
+     * @throws EnergyOutOfBoundsException if energy is out of bounds.
+     */
+    public int add(Species type, float weight, float speed, float energy)
+            throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
+        return add(type.getCode(), weight, speed, energy);
+    }
+
+    /**
+     * Appends an animal to the end of the circular queue, after every slot in use.
+     *
+     * @param code   the species code of the animal in the registry of the store.
+     * @param weight the weight of the animal.
+     * @param speed  the speed of the animal.
+     * @param energy the energy of the animal.
+     * @return the index of the new animal.
+     * @throws WeightOutOfBoundsException if weight is out of bounds.
+     * @throws SpeedOutOfBoundsException  if speed is out of bounds.
+     * @throws EnergyOutOfBoundsException if energy is out of bounds.
+     */
+    public int add(byte code, float weight, float speed, float energy)
+            throws WeightOutOfBoundsException, SpeedOutOfBoundsException, EnergyOutOfBoundsException {
+        if (code < 0 || code >= registry.size()) {
+            throw new IllegalArgumentException("Unknown species code " + code);
+        }
+        if (weight < MIN_WEIGHT || weight > MAX_WEIGHT) {
+            throw new WeightOutOfBoundsException();
+        }
+        if (speed < MIN_SPEED || speed > MAX_SPEED) {
+            throw new SpeedOutOfBoundsException();
+        }
+        if (energy < MIN_ENERGY || energy > MAX_ENERGY) {
+            throw new EnergyOutOfBoundsException();
+        }
+        if (slots == species.length) {
+            grow();
+        }
+        this.species[slots] = code;
+        this.weight[slots] = weight;
+        this.speed[slots] = speed;
+        this.energy[slots] = energy;
+        if (ids != null) {
+            ids[slots] = nextId++;
+        }
+        return slots++;
+    }
+
+    /**
+     * Adds an offspring of an animal at the end of the queue, without validating it. The
+     * offspring has the species and the position of its parent. Call {@link #reserve} before a
+     * run of births, so they reuse the slots of dead animals instead of growing the columns.
+     *
+     * @param parent the position of the parent.
+     * @param weight the weight of the offspring, within bounds.
+     * @param speed  the speed of the offspring, within bounds.
+     * @param energy the energy of the offspring, within bounds.
+     * @return the position of the offspring.
+     * @throws IllegalStateException if the store is full.
+     */
+    int spawn(int parent, float weight, float speed, float energy) {
+        if (slots == species.length) {
+            grow();
+        }
+        int index = slots++;
+        species[index] = species[parent];
+        this.weight[index] = weight;
+        this.speed[index] = speed;
+        this.energy[index] = energy;
+        if (x != null) {
+            x[index] = x[parent];
+            y[index] = y[parent];
+        }
+        if (ids != null) {
+            ids[index] = nextId++;
+        }
+        return index;
+    }
+
+    /**
+     * Makes room for animals about to be added at the end of the queue, compacting the store if
+     * they would not fit in its columns otherwise. Positions change if the store is compacted.
+     *
+     * @param count the number of animals about to be added.
+     */
+    void reserve(int count) {
+        if ((long) slots + count > species.length && buried > 0) {
+            compact();
+        }
+    }
+
+    /**
+     * Doubles the capacity of every column, up to {@link #MAX_CAPACITY}.
+     *
+     * @throws IllegalStateException if the store is already at its maximum capacity.
+     */
+    private void grow() {
+        if (species.length == MAX_CAPACITY) {
+            throw new IllegalStateException("A population holds at most " + MAX_CAPACITY + " animals");
+        }
+        int capacity = Math.min(species.length * 2, MAX_CAPACITY);
+        species = Arrays.copyOf(species, capacity);
+        weight = Arrays.copyOf(weight, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        energy = Arrays.copyOf(energy, capacity);
+        if (x != null) {
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+        }
+        if (ids != null) {
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        tombstones = Arrays.copyOf(tombstones, wordsFor(capacity));
+    }
+
+    /**
+     * @param capacity a number of slots.
+     * @return the number of bitset words covering them.
+     */
+    private static int wordsFor(int capacity) {
+        return (capacity + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * @return the species the animals may belong to.
+     */
+    public SpeciesRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return the number of animals in the store, not counting tombstones.
+     */
+    public int size() {
+        return slots - buried;
+    }
+
+    /**
+     * @return whether the store holds no animals.
+     */
+    public boolean isEmpty() {
+        return slots == buried;
+    }
+
+    /**
+     * @return the number of slots in use, including tombstones; every position is below it.
+     */
+    public int slots() {
+        return slots;
+    }
+
+    /**
+     * @param index the position of a slot.
+     * @return whether the slot holds an animal rather than a tombstone.
+     */
+    public boolean isLive(int index) {
+        return (tombstones[index >>> 6] & (1L << index)) == 0;
+    }
+
+    /**
+     * Finds the next animal in queue order, skipping tombstones.
+     *
+     * @param index the position to search after, or -1 to find the first animal.
+     * @return the position of the next animal, or -1 if there is none before the end of the queue.
+     */
+    public int nextLive(int index) {
+        int from = index + 1;
+        if (buried == 0) {
+            return from < slots ? from : -1;
+        }
+        if (from >= slots) {
+            return -1;
+        }
+        int word = from >>> 6;
+        long live = ~tombstones[word] & (-1L << from);
+        int words = wordsFor(slots);
+        while (live == 0) {
+            if (++word == words) {
+                return -1;
+            }
+            live = ~tombstones[word];
+        }
+        int next = word * Long.SIZE + Long.numberOfTrailingZeros(live);
+        return next < slots ? next : -1;
+    }
+
+    /**
+     * Finds the first animal at or after a position, skipping tombstones.
+     *
+     * @param index the position to search from.
+     * @return the position of the animal, or -1 if there is none before the end of the queue.
+     */
+    public int liveAtOrAfter(int index) {
+        return nextLive(index - 1);
+    }
+
+    /**
+     * @return the position of the last animal in queue order, or -1 if the store is empty.
+     */
+    public int lastLive() {
+        for (int i = slots - 1; i >= 0; i--) {
+            if (isLive(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index the position of the animal.
+     * @return the species code of the animal.
+     */
+    public byte getSpecies(int index) {
+        return species[index];
+    }
+
+    /**
+     * @param index the position of the animal.
+     * @return the species of the animal.
+     */
+    public SpeciesType getType(int index) {
+        return registry.get(species[index]);
+    }
+
+    /**
+     * @param index the position of the animal.
+     * @return the weight of the animal.
+     */
+    public float getWeight(int index) {
+        return weight[index];
+    }
+
+    /**
+     * @param index the position of the animal.
+     * @return the speed of the animal.
+     */
+    public float getSpeed(int index) {
+        return speed[index];
+    }
+
+    /**
+     * @param index the position of the animal.
+     * @return the energy of the animal.
+     */
+    public float getEnergy(int index) {
+        return energy[index];
+    }
+
+    /**
+     * @return whether animals have positions, set with {@link #setPosition}.
+     */
+    public boolean hasPositions() {
+        return x != null;
+    }
+
+    /**
+     * Places an animal on a landscape. The position columns are only allocated once the first
+     * animal is placed; until then every animal is at the origin.
+     *
+     * @param index the position of the animal in the queue.
+     * @param x     the horizontal coordinate.
+     * @param y     the vertical coordinate.
+     */
+    public void setPosition(int index, float x, float y) {
+        if (this.x == null) {
+            this.x = new float[species.length];
+            this.y = new float[species.length];
+        }
+        this.x[index] = x;
+        this.y[index] = y;
+    }
+
+    /**
+     * @param index the position of the animal in the queue.
+     * @return the horizontal coordinate of the animal.
+     */
+    public float getX(int index) {
+        return x == null ? 0 : x[index];
+    }
+
+    /**
+     * @param index the position of the animal in the queue.
+     * @return the vertical coordinate of the animal.
+     */
+    public float getY(int index) {
+        return y == null ? 0 : y[index];
+    }
+
+    /**
+     * Gives every animal a stable identifier that follows it through compactions and copies.
+     * The store is compacted first, so the animals are numbered from 0 in queue order; animals
+     * added later get the following numbers. Has no effect if identifiers are already tracked.
+     */
+    public void trackIds() {
+        if (ids != null) {
+            return;
+        }
+        compact();
+        ids = new int[species.length];
+        for (int i = 0; i < slots; i++) {
+            ids[i] = i;
+        }
+        nextId = slots;
+    }
+
+    /**
+     * @param index the position of the animal in the queue.
+     * @return the identifier of the animal, or its position if identifiers are not tracked.
+     */
+    public int getId(int index) {
+        return ids == null ? index : ids[index];
+    }
+
+    /**
+     * Adds energy to an animal, capped by the maximum energy.
+     *
+     * @param index  the position of the animal.
+     * @param amount the energy to add.
+     */
+    public void feed(int index, float amount) {
+        energy[index] = Math.min(energy[index] + amount, MAX_ENERGY);
+    }
+
+    /**
+     * Kills an animal by setting its energy to zero.
+     *
+     * @param index the position of the animal.
+     */
+    public void kill(int index) {
+        energy[index] = 0;
+    }
+
+    /**
+     * Reduces the energy of one animal, ensuring it does not drop below zero.
+     *
+     * @param index  the position of the animal.
+     * @param amount the energy to remove.
+     */
+    public void decrementEnergy(int index, float amount) {
+        energy[index] = Math.max(energy[index] - amount, 0);
+    }
+
+    /**
+     * Reduces the energy of every animal by 1%, ensuring it does not drop below zero.
+     */
+    public void decrementEnergy() {
+        for (int i = 0; i < slots; i++) {
+            energy[i] = Math.max(energy[i] - 1, 0);
+        }
+    }
+
+    /**
+     * Creates a store from columns, validating every animal.
+     *
+     * @param size    the number of animals.
+     * @param species the species codes.
+     * @param weight  the weights.
+     * @param speed   the speeds.
+     * @param energy  the energies.
+     * @return the new store.
+     * @throws Exception if a species code is unknown or a property is out of bounds.
+     */
+    public static PopulationStore fromColumns(int size, ByteBuffer species, FloatBuffer weight,
+                                              FloatBuffer speed, FloatBuffer energy) throws Exception {
+        PopulationStore store = new PopulationStore(size);
+        species.duplicate().get(store.species, 0, size);
+        weight.duplicate().get(store.weight, 0, size);
+        speed.duplicate().get(store.speed, 0, size);
+        energy.duplicate().get(store.energy, 0, size);
+        store.slots = size;
+
+        int speciesCount = store.registry.size();
+        for (int i = 0; i < size; i++) {
+            if (store.species[i] < 0 || store.species[i] >= speciesCount) {
+                throw new InvalidInputsException();
+            }
+            if (store.weight[i] < MIN_WEIGHT || store.weight[i] > MAX_WEIGHT) {
+                throw new WeightOutOfBoundsException();
+            }
+            if (store.speed[i] < MIN_SPEED || store.speed[i] > MAX_SPEED) {
+                throw new SpeedOutOfBoundsException();
+            }
+            if (store.energy[i] < MIN_ENERGY || store.energy[i] > MAX_ENERGY) {
+                throw new EnergyOutOfBoundsException();
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Compacts the store and copies every column into buffers, starting at their current positions.
+     *
+     * @param species the buffer receiving the species codes.
+     * @param weight  the buffer receiving the weights.
+     * @param speed   the buffer receiving the speeds.
+     * @param energy  the buffer receiving the energies.
+     */
+    public void writeColumns(ByteBuffer species, FloatBuffer weight, FloatBuffer speed, FloatBuffer energy) {
+        compact();
+        species.duplicate().put(this.species, 0, slots);
+        weight.duplicate().put(this.weight, 0, slots);
+        speed.duplicate().put(this.speed, 0, slots);
+        energy.duplicate().put(this.energy, 0, slots);
+    }
+
+    /**
+     * Ends the day for the whole population in one pass over the energy column: every animal
+     * loses 1 energy, without dropping below zero, and those left without energy are turned into
+     * tombstones. Has the same effect as {@link #decrementEnergy()} followed by {@link #removeDead}.
+     *
+     * @return the number of removed animals.
+     */
+    public int decayAndRemoveDead() {
+        int removed = EndOfDayKernel.decayAndMarkDead(energy, tombstones, slots);
+        buried += removed;
+        if (buried > slots - buried) {
+            compact();
+        }
+        return removed;
+    }
+
+    /**
+     * Turns the slots of animals with zero or negative energy into tombstones, and compacts the
+     * store once tombstones outnumber animals.
+     *
+     * @return the number of removed animals.
+     */
+    public int removeDead() {
+        int removed = 0;
+        for (int i = 0; i < slots; i++) {
+            if (energy[i] <= 0 && isLive(i)) {
+                tombstones[i >>> 6] |= 1L << i;
+                energy[i] = 0;
+                removed++;
+            }
+        }
+        buried += removed;
+        if (buried > slots - buried) {
+            compact();
+        }
+        return removed;
+    }
+
+    /**
+     * @return an independent copy of the store, without its tombstones.
+     */
+    public PopulationStore copy() {
+        PopulationStore copy = new PopulationStore(Math.max(size(), 1), registry);
+        for (int i = nextLive(-1); i >= 0; i = nextLive(i)) {
+            int index = copy.slots++;
+            copy.species[index] = species[i];
+            copy.weight[index] = weight[i];
+            copy.speed[index] = speed[i];
+            copy.energy[index] = energy[i];
+            if (x != null) {
+                copy.setPosition(index, x[i], y[i]);
+            }
+            if (ids != null) {
+                if (copy.ids == null) {
+                    copy.ids = new int[copy.species.length];
+                }
+                copy.ids[index] = ids[i];
+            }
+        }
+        if (ids != null) {
+            copy.trackIds();
+            copy.nextId = nextId;
+        }
+        return copy;
+    }
+
+    /**
+     * Replaces the animals of this store by copies of the living animals of another store, in
+     * the same order and with their positions, reusing the columns of this store if they are
+     * large enough. Identifiers are not copied.
+     *
+     * @param source a store of the same species registry.
+     * @throws IllegalArgumentException if the stores have different registries.
+     */
+    public void copyFrom(PopulationStore source) {
+        if (source.registry != registry) {
+            throw new IllegalArgumentException("The stores have different species registries");
+        }
+        int size = source.size();
+        if (species.length < size) {
+            species = new byte[size];
+            weight = new float[size];
+            speed = new float[size];
+            energy = new float[size];
+            tombstones = new long[wordsFor(size)];
+        } else {
+            Arrays.fill(tombstones, 0, wordsFor(slots), 0);
+        }
+        x = null;
+        y = null;
+        ids = null;
+        slots = 0;
+        buried = 0;
+        for (int i = source.nextLive(-1); i >= 0; i = source.nextLive(i)) {
+            species[slots] = source.species[i];
+            weight[slots] = source.weight[i];
+            speed[slots] = source.speed[i];
+            energy[slots] = source.energy[i];
+            if (source.x != null) {
+                setPosition(slots, source.x[i], source.y[i]);
+            }
+            slots++;
+        }
+    }
+
+    /**
+     * Shifts every animal over the tombstones before it, keeping their order.
+     */
+    public void compact() {
+        if (buried == 0) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < slots; i++) {
+            if (isLive(i)) {
+                if (kept != i) {
+                    species[kept] = species[i];
+                    weight[kept] = weight[i];
+                    speed[kept] = speed[i];
+                    energy[kept] = energy[i];
+                    if (x != null) {
+                        x[kept] = x[i];
+                        y[kept] = y[i];
+                    }
+                    if (ids != null) {
+                        ids[kept] = ids[i];
+                    }
+                }
+                kept++;
+            }
+        }
+        Arrays.fill(tombstones, 0, wordsFor(slots), 0);
+        slots = kept;
+        buried = 0;
+    }
+}
+
+/**
+ * Array kernels of the end of a simulation day, shared by the engines.
+ *
+ * <p>The loops are written for the JIT's auto-vectorizer: plain indexed passes over primitive
+ * arrays, with no calls, branches or dependencies between elements in the arithmetic.
+ */
+class EndOfDayKernel {
+
+    private static final float MIN_ENERGY = Constants.MIN_ENERGY.getValue();
+    private static final float MAX_AMOUNT_GRASS = Constants.MAX_AMOUNT_GRASS.getValue();
+
+    private EndOfDayKernel() {
+    }
+
+    /**
+     * Decreases every energy by 1, clamped at zero, and marks the slots left without energy in a
+     * tombstone bitset. The energies are processed 64 at a time, one bitset word each, so the
+     * decayed values are still in cache when the word of dead slots is built from them.
+     *
+     * @param energy     the energy column.
+     * @param tombstones the bitset of dead slots, one bit per slot.
+     * @param length     the number of slots in use.
+     * @return the number of slots that were live and are now marked dead.
+     */
+    static int decayAndMarkDead(float[] energy, long[] tombstones, int length) {
+        int marked = 0;
+        for (int from = 0; from < length; from += Long.SIZE) {
+            int to = Math.min(from + Long.SIZE, length);
+            for (int i = from; i < to; i++) {
+                energy[i] = Math.max(energy[i] - 1, MIN_ENERGY);
+            }
+            long dead = 0;
+            for (int i = to - 1; i >= from; i--) {
+                // The decayed energy is never negative, so its bits are zero exactly when it is 0
+                dead = dead << 1 | (Float.floatToRawIntBits(energy[i]) - 1) >>> 31;
+            }
+            int word = from >>> 6;
+            dead &= ~tombstones[word];
+            tombstones[word] |= dead;
+            marked += Long.bitCount(dead);
+        }
+        return marked;
+    }
+
+    /**
+     * Doubles several amounts of grass at once, each capped at the maximum allowed value, as
+     * {@link Field#makeGrassGrow} does for one field.
+     *
+     * @param grassAmounts the amounts of grass, e.g. of every cell of a grid or of many fields.
+     * @param length       the number of amounts to grow.
+     */
+    static void growGrass(float[] grassAmounts, int length) {
+        for (int i = 0; i < length; i++) {
+            grassAmounts[i] = Math.min(grassAmounts[i] * 2, MAX_AMOUNT_GRASS);
+        }
+    }
+}
+
+/**
+ * Reproduction rules of a columnar simulation, per species.
+ *
+ * <p>At the end of every day, after the dead are removed, each living animal of a breeding
+ * species whose energy reaches the threshold of its species gives birth to one offspring and
+ * hands it a fixed amount of its energy. The offspring inherits the weight and speed of its
+ * parent, each varied by a uniform random factor within {@code 1 +- variation} and kept within
+ * bounds. The cost is below the threshold, so newborns never breed on the day they are born.
+ * Births stop once the population reaches its largest size.
+ */
+class BreedingRules {
+
+    private static final String PREFIX = "breeding.";
+    private static final float MIN_WEIGHT = Constants.MIN_WEIGHT.getValue();
+    private static final float MAX_WEIGHT = Constants.MAX_WEIGHT.getValue();
+    private static final float MIN_SPEED = Constants.MIN_SPEED.getValue();
+    private static final float MAX_SPEED = Constants.MAX_SPEED.getValue();
+    private static final float MAX_ENERGY = Constants.MAX_ENERGY.getValue();
+
+    private final float[] thresholds;
+    private final float[] costs;
+    private final double variation;
+    private final int maxAnimals;
+    private final long seed;
+
+    /**
+     * Creates rules.
+     *
+     * @param thresholds the energy an animal of each species needs to breed, or NaN where the
+     *                   species does not breed; indexed by species code.
+     * @param costs      the energy an animal of each species hands its offspring.
+     * @param variation  the largest relative difference between the weight or speed of an
+     *                   offspring and its parent's.
+     * @param maxAnimals the largest number of animals births may lead to.
+     * @param seed       the seed of the random variations.
+     * @throws IllegalArgumentException if a threshold is above the maximum energy, a cost is not
+     *                                  positive and below its threshold, or the variation is not
+     *                                  in {@code [0, 1)}.
+     */
+    public BreedingRules(float[] thresholds, float[] costs, double variation, int maxAnimals, long seed) {
+        if (thresholds.length != costs.length || !(variation >= 0 && variation < 1) || maxAnimals < 1) {
+            throw new IllegalArgumentException("Invalid breeding rules");
+        }
+        for (int i = 0; i < thresholds.length; i++) {
+            if (!Float.isNaN(thresholds[i])
+                    && !(thresholds[i] <= MAX_ENERGY && costs[i] > 0 && costs[i] < thresholds[i])) {
+                throw new IllegalArgumentException("Invalid breeding rules");
+            }
+        }
+        this.thresholds = thresholds.clone();
+        this.costs = costs.clone();
+        this.variation = variation;
+        this.maxAnimals = maxAnimals;
+        this.seed = seed;
+    }
+
+    /**
+     * Loads rules from a properties file such as
+     * <pre>
+     * breeding.Zebra.threshold=80
+     * breeding.Zebra.cost=30
+     * breeding.variation=0.1
+     * breeding.seed=42
+     * </pre>
+     * Species without a threshold do not breed. The variation defaults to 0.1, the seed to 0 and
+     * the largest population to the largest number of animals of the limits.
+     *
+     * @param path     the properties file.
+     * @param registry the species the animals may belong to.
+     * @param limits   the largest numbers of days and animals of a scenario.
+     * @return the rules.
+     * @throws IOException            if the file cannot be read.
+     * @throws InvalidInputsException if the file names an unknown species or sets an invalid rule.
+     */
+    public static BreedingRules load(Path path, SpeciesRegistry registry, SimulationLimits limits)
+            throws IOException, InvalidInputsException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        float[] thresholds = new float[registry.size()];
+        float[] costs = new float[registry.size()];
+        Arrays.fill(thresholds, Float.NaN);
+        try {
+            for (String key : properties.stringPropertyNames()) {
+                String value = properties.getProperty(key).trim();
+                int dot = key.lastIndexOf('.');
+                if (key.equals(PREFIX + "variation") || key.equals(PREFIX + "seed")) {
+                    continue;
+                }
+                SpeciesType type = key.startsWith(PREFIX) && dot > PREFIX.length()
+                        ? registry.find(key.substring(PREFIX.length(), dot)) : null;
+                if (type == null) {
+                    throw new InvalidInputsException();
+                }
+                if (key.endsWith(".threshold")) {
+                    thresholds[type.getCode()] = Float.parseFloat(value);
+                } else if (key.endsWith(".cost")) {
+                    costs[type.getCode()] = Float.parseFloat(value);
+                } else {
+                    throw new InvalidInputsException();
+                }
+            }
+            return new BreedingRules(thresholds, costs,
+                    Double.parseDouble(properties.getProperty(PREFIX + "variation", "0.1").trim()),
+                    limits.getMaxAnimals(), Long.parseLong(properties.getProperty(PREFIX + "seed", "0").trim()));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidInputsException();
+        }
+    }
+
+    /**
+     * @param species the species code of an animal.
+     * @param energy  the energy of the animal.
+     * @return whether the animal breeds.
+     */
+    public boolean breeds(byte species, float energy) {
+        return energy >= thresholds[species]; // Never true for NaN
+    }
+
+    /**
+     * @param species a species code.
+     * @return the energy an animal of the species hands its offspring.
+     */
+    public float getCost(byte species) {
+        return costs[species];
+    }
+
+    /**
+     * Varies a weight inherited by an offspring.
+     *
+     * @param weight the weight of the parent.
+     * @param random the random stream of the simulation.
+     * @return the weight of the offspring.
+     */
+    public float inheritWeight(float weight, SplittableRandom random) {
+        return Math.min(Math.max(vary(weight, random), MIN_WEIGHT), MAX_WEIGHT);
+    }
+
+    /**
+     * Varies a speed inherited by an offspring.
+     *
+     * @param speed  the speed of the parent.
+     * @param random the random stream of the simulation.
+     * @return the speed of the offspring.
+     */
+    public float inheritSpeed(float speed, SplittableRandom random) {
+        return Math.min(Math.max(vary(speed, random), MIN_SPEED), MAX_SPEED);
+    }
+
+    /**
+     * @param value  a value.
+     * @param random the random stream of the simulation.
+     * @return the value multiplied by a uniform random factor within {@code 1 +- variation}.
+     */
+    private float vary(float value, SplittableRandom random) {
+        return variation == 0 ? value : (float) (value * (1 + variation * (2 * random.nextDouble() - 1)));
+    }
+
+    /**
+     * @return the largest number of animals births may lead to.
+     */
+    public int getMaxAnimals() {
+        return maxAnimals;
+    }
+
+    /**
+     * @return the seed of the random variations.
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
+
+/**
+ * How a hunter of a columnar simulation chooses its prey.
+ */
+enum HuntingMode {
+    /**
+     * Every hunter attacks the next animal of the circular queue, as in the original rules.
+     */
+    NEIGHBOUR("neighbour"),
+    /**
+     * Every hunter attacks the most energy-rich animal of its diet that it can catch, found with
+     * a {@link PreyIndex}, or no animal if it cannot catch any.
+     */
+    BEST_PREY("best-prey");
+
+    private final String cliName;
+
+    /**
+     * @param cliName the name of the mode on the command line.
+     */
+    HuntingMode(String cliName) {
+        this.cliName = cliName;
+    }
+
+    /**
+     * @return the name of the mode on the command line.
+     */
+    public String getCliName() {
+        return cliName;
+    }
+
+    /**
+     * @param cliName the name of a mode on the command line.
+     * @return the mode.
+     * @throws InvalidInputsException if no mode has that name.
+     */
+    public static HuntingMode parse(String cliName) throws InvalidInputsException {
+        for (HuntingMode mode : values()) {
+            if (mode.cliName.equals(cliName)) {
+                return mode;
+            }
+        }
+        throw new InvalidInputsException();
+    }
+}
+
+/**
+ * Indexes the living animals of a {@link PopulationStore} by species, speed and energy, so a
+ * hunter finds the most energy-rich prey it can catch in O(log N) per prey species.
+ *
+ * <p>A hunter catches a prey that is slower than it or has less energy. For each species the
+ * index keeps the animals ordered by energy in a treap, whose greatest animal below the
+ * hunter's energy is the best prey with less energy, and sorted by speed under a segment tree
+ * of energy maxima, whose maximum over the animals slower than the hunter is the best slower
+ * prey. The better of the two is the answer. Ties go to the animal first in the queue. Both
+ * structures are int arrays indexed by queue position, so hunting allocates nothing; they are
+ * only reallocated when a rebuild needs more room.
+ *
+ * <p>Both structures compare the current energies of the store, so an animal must be removed
+ * before its energy changes and added back afterwards. The uniform energy decrease at the end
+ * of a day keeps the order of the survivors, so only the animals it kills need removing. Speeds
+ * never change, but births and compaction move animals, after which the index is rebuilt.
+ */
+class PreyIndex {
+
+    private final PopulationStore store;
+    private final SpeciesRegistry registry;
+    private int[] roots = new int[0];
+    private int[] left = new int[0];
+    private int[] right = new int[0];
+    private int[] leaves = new int[0];
+    private int[] starts = new int[1];
+    private long[] keys = new long[0];
+    private float[] speeds = new float[0];
+    private int[] treeStarts = new int[1];
+    private int[] trees = new int[0];
+
+    /**
+     * Indexes the living animals of a store.
+     *
+     * @param store the population.
+     */
+    public PreyIndex(PopulationStore store) {
+        this.store = store;
+        this.registry = store.getRegistry();
+        rebuild();
+    }
+
+    /**
+     * Indexes the living animals of the store again, after animals were born or moved.
+     */
+    public void rebuild() {
+        int speciesCount = registry.size();
+        int slots = store.slots();
+        if (roots.length != speciesCount) {
+            roots = new int[speciesCount];
+            starts = new int[speciesCount + 1];
+            treeStarts = new int[speciesCount + 1];
+        }
+        if (left.length < slots) {
+            left = new int[slots];
+            right = new int[slots];
+            leaves = new int[slots];
+        }
+        Arrays.fill(starts, 0);
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            starts[store.getSpecies(i) + 1]++;
+        }
+        for (int s = 0; s < speciesCount; s++) {
+            starts[s + 1] += starts[s];
+            treeStarts[s] = starts[s]; // Where the next animal of the species goes
+        }
+        int live = starts[speciesCount];
+        if (keys.length < live) {
+            keys = new long[live];
+            speeds = new float[live];
+        }
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            // Bits of positive floats sort like the floats; the queue position breaks ties
+            keys[treeStarts[store.getSpecies(i)]++] = (long) Float.floatToIntBits(store.getSpeed(i)) << 32 | i;
+        }
+        int treeSize = 0;
+        for (int s = 0; s < speciesCount; s++) {
+            treeStarts[s] = treeSize;
+            treeSize += 2 * Integer.highestOneBit(Math.max(starts[s + 1] - starts[s], 1) * 2 - 1);
+        }
+        treeStarts[speciesCount] = treeSize;
+        if (trees.length < treeSize) {
+            trees = new int[treeSize];
+        }
+        Arrays.fill(trees, 0, treeSize, -1);
+        for (int s = 0; s < speciesCount; s++) {
+            Arrays.sort(keys, starts[s], starts[s + 1]);
+            int base = treeStarts[s];
+            int width = (treeStarts[s + 1] - base) / 2;
+            roots[s] = -1;
+            for (int leaf = 0; leaf < starts[s + 1] - starts[s]; leaf++) {
+                int index = (int) keys[starts[s] + leaf];
+                speeds[starts[s] + leaf] = store.getSpeed(index);
+                leaves[index] = leaf;
+                trees[base + width + leaf] = index;
+                roots[s] = insert(roots[s], index);
+            }
+            for (int node = width - 1; node > 0; node--) {
+                trees[base + node] = better(trees[base + 2 * node], trees[base + 2 * node + 1]);
+            }
+        }
+    }
+
+    /**
+     * Removes an animal, before its energy changes or it dies.
+     *
+     * @param index the position of the animal.
+     */
+    public void remove(int index) {
+        byte s = store.getSpecies(index);
+        roots[s] = delete(roots[s], index);
+        update(s, index, -1);
+    }
+
+    /**
+     * Adds an animal back, after its energy changed.
+     *
+     * @param index the position of the animal.
+     */
+    public void add(int index) {
+        byte s = store.getSpecies(index);
+        roots[s] = insert(roots[s], index);
+        update(s, index, index);
+    }
+
+    /**
+     * Finds the most energy-rich animal a hunter can catch among every species of its diet.
+     *
+     * @param hunter the position of the hunter.
+     * @return the position of the prey, or -1 if the hunter cannot catch any animal.
+     */
+    public int bestPrey(int hunter) {
+        byte hunterSpecies = store.getSpecies(hunter);
+        float hunterSpeed = store.getSpeed(hunter);
+        float hunterEnergy = store.getEnergy(hunter);
+        int best = -1;
+        for (int s = 0; s < roots.length; s++) {
+            if (s == hunterSpecies || !registry.canHunt(hunterSpecies, (byte) s)) {
+                continue;
+            }
+            best = better(best, weakerMaximum(roots[s], hunterEnergy));
+            best = better(best, slowerMaximum(s, hunterSpeed));
+        }
+        return best;
+    }
+
+    /**
+     * @param root   the treap of a species.
+     * @param energy the energy of a hunter.
+     * @return the most energy-rich animal of the species with less energy than the hunter, or -1.
+     */
+    private int weakerMaximum(int root, float energy) {
+        int best = -1;
+        for (int node = root; node >= 0; ) {
+            if (store.getEnergy(node) < energy) {
+                best = node; // Later nodes of the order have more energy, or as much and come first
+                node = right[node];
+            } else {
+                node = left[node];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param s     a species code.
+     * @param speed the speed of a hunter.
+     * @return the most energy-rich animal of the species slower than the hunter, or -1.
+     */
+    private int slowerMaximum(int s, float speed) {
+        int low = starts[s];
+        int high = starts[s + 1];
+        while (low < high) { // Count the animals slower than the hunter
+            int middle = (low + high) >>> 1;
+            if (speeds[middle] < speed) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int base = treeStarts[s];
+        int width = (treeStarts[s + 1] - base) / 2;
+        int best = -1;
+        for (int from = width, to = from + low - starts[s]; from < to; from >>>= 1, to >>>= 1) {
+            if ((from & 1) != 0) {
+                best = better(best, trees[base + from++]);
+            }
+            if ((to & 1) != 0) {
+                best = better(best, trees[base + --to]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Sets the leaf of an animal and the maxima above it.
+     *
+     * @param s     the species code of the animal.
+     * @param index the position of the animal.
+     * @param value the position of the animal, or -1 to remove it.
+     */
+    private void update(int s, int index, int value) {
+        int base = treeStarts[s];
+        int node = (treeStarts[s + 1] - base) / 2 + leaves[index];
+        trees[base + node] = value;
+        for (node >>>= 1; node > 0; node >>>= 1) {
+            trees[base + node] = better(trees[base + 2 * node], trees[base + 2 * node + 1]);
+        }
+    }
+
+    /**
+     * Inserts an animal into a treap ordered by {@link #precedes}.
+     *
+     * @param node  the root of the treap, or -1 if it is empty.
+     * @param index the position of the animal.
+     * @return the new root.
+     */
+    private int insert(int node, int index) {
+        if (node < 0) {
+            left[index] = -1;
+            right[index] = -1;
+            return index;
+        }
+        if (precedes(index, node)) {
+            left[node] = insert(left[node], index);
+            if (priority(left[node]) > priority(node)) {
+                int child = left[node];
+                left[node] = right[child];
+                right[child] = node;
+                return child;
+            }
+        } else {
+            right[node] = insert(right[node], index);
+            if (priority(right[node]) > priority(node)) {
+                int child = right[node];
+                right[node] = left[child];
+                left[child] = node;
+                return child;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Removes an animal from a treap, while its energy is still the one it was inserted with.
+     *
+     * @param node  the root of the treap, or -1 if it is empty.
+     * @param index the position of the animal.
+     * @return the new root.
+     */
+    private int delete(int node, int index) {
+        if (node < 0) {
+            return -1;
+        }
+        if (node == index) {
+            return merge(left[node], right[node]);
+        }
+        if (precedes(index, node)) {
+            left[node] = delete(left[node], index);
+        } else {
+            right[node] = delete(right[node], index);
+        }
+        return node;
+    }
+
+    /**
+     * Joins two treaps, every animal of the first preceding every animal of the second.
+     *
+     * @param a the root of the first treap, or -1.
+     * @param b the root of the second treap, or -1.
+     * @return the root of the joined treap.
+     */
+    private int merge(int a, int b) {
+        if (a < 0 || b < 0) {
+            return a < 0 ? b : a;
+        }
+        if (priority(a) > priority(b)) {
+            right[a] = merge(right[a], b);
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        return b;
+    }
+
+    /**
+     * Orders animals by increasing energy, then by decreasing position, so the greatest animal
+     * with less energy than a hunter is the best prey with less energy.
+     *
+     * @param a the position of an animal.
+     * @param b the position of another animal.
+     * @return whether the first animal comes before the second.
+     */
+    private boolean precedes(int a, int b) {
+        int order = Float.compare(store.getEnergy(a), store.getEnergy(b));
+        return order < 0 || (order == 0 && a > b);
+    }
+
+    /**
+     * @param index the position of an animal.
+     * @return its pseudo-random treap priority, which keeps the treap balanced.
+     */
+    private static int priority(int index) {
+        int hash = index * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @param a the position of an animal, or -1.
+     * @param b the position of another animal, or -1.
+     * @return the one with more energy, or first in the queue if they have as much.
+     */
+    private int better(int a, int b) {
+        if (a < 0 || b < 0) {
+            return a < 0 ? b : a;
+        }
+        int order = Float.compare(store.getEnergy(a), store.getEnergy(b));
+        return order > 0 || (order == 0 && a < b) ? a : b;
+    }
+}
+
+/**
+ * Runs the daily simulation loop over a {@link PopulationStore}.
+ * The rules are the same as in {@link ForestSimulator}, applied to primitive columns.
+ */
+class PopulationEngine {
+
+    private static final float GRAZE_ENERGY_DIVISOR = Constants.GRAZE_ENERGY_DIVISOR.getValue();
+    private static final HuntOutcome[] OUTCOMES = HuntOutcome.values();
+
+    private final PopulationStore store;
+    private final SpeciesRegistry registry;
+    private final Field field;
+    private final HuntMetrics huntMetrics = new HuntMetrics();
+    private final long[] publishedHunts = new long[OUTCOMES.length];
+    private SimulationMetrics metrics;
+    private EventLog eventLog;
+    private DaySnapshotPublisher snapshots;
+    private BreedingRules breeding;
+    private SplittableRandom random;
+    private long births;
+    private HuntingMode huntingMode = HuntingMode.NEIGHBOUR;
+    private PreyIndex preyIndex;
+    private Consumer<HuntOutcome> rejectionListener;
+    private int day;
+    private int dayStartSize;
+    private long dayStart;
+    private long grazes;
+    private long grazesSucceeded;
+    private double grassConsumed;
+
+    /**
+     * Creates an engine for the given population and field.
+     *
+     * @param store the population.
+     * @param field the field environment.
+     */
+    public PopulationEngine(PopulationStore store, Field field) {
+        this.store = store;
+        this.registry = store.getRegistry();
+        this.field = field;
+    }
+
+    /**
+     * @return the outcome counts of every hunt attempted by this engine.
+     */
+    public HuntMetrics getHuntMetrics() {
+        return huntMetrics;
+    }
+
+    /**
+     * @return the number of days this engine simulated or skipped.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Instruments the engine: from now on every day is timed and published to the metrics.
+     *
+     * @param metrics the metrics, or null to stop instrumenting.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Logs every event from now on. Quiescent days are simulated rather than skipped while
+     * logging, so the log holds every event of every day.
+     *
+     * @param eventLog the log, created for the population of this engine, or null to stop logging.
+     */
+    public void setEventLog(EventLog eventLog) {
+        if (eventLog != null && breeding != null) {
+            throw new IllegalStateException("Event logs have no birth events");
+        }
+        if (eventLog != null && huntingMode != HuntingMode.NEIGHBOUR) {
+            throw new IllegalStateException("Event logs are replayed with neighbour hunting");
+        }
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * Sets how hunters choose their prey from now on. Quiescent days are simulated rather than
+     * skipped unless hunters attack their neighbours.
+     *
+     * @param huntingMode the hunting mode.
+     * @throws IllegalStateException if the engine logs events and the mode is not neighbour hunting.
+     */
+    public void setHuntingMode(HuntingMode huntingMode) {
+        if (huntingMode != HuntingMode.NEIGHBOUR && eventLog != null) {
+            throw new IllegalStateException("Event logs are replayed with neighbour hunting");
+        }
+        this.huntingMode = huntingMode;
+        this.preyIndex = null;
+    }
+
+    /**
+     * @return how hunters choose their prey.
+     */
+    public HuntingMode getHuntingMode() {
+        return huntingMode;
+    }
+
+    /**
+     * Lets animals breed at the end of every day from now on. Quiescent days are simulated
+     * rather than skipped while breeding, since births end them.
+     *
+     * @param breeding the rules, or null to stop breeding.
+     * @throws IllegalStateException if the engine logs events.
+     */
+    public void setBreedingRules(BreedingRules breeding) {
+        if (breeding != null && eventLog != null) {
+            throw new IllegalStateException("Event logs have no birth events");
+        }
+        this.breeding = breeding;
+        this.random = breeding == null ? null : new SplittableRandom(breeding.getSeed());
+    }
+
+    /**
+     * @return the number of animals born so far.
+     */
+    public long getBirths() {
+        return births;
+    }
+
+    /**
+     * Publishes snapshots of the simulation from now on, as often as the publisher asks for them.
+     * Days skipped at once by the fast-forward are summarized once, at their end.
+     *
+     * @param snapshots the publisher, or null to stop publishing.
+     */
+    public void setSnapshotPublisher(DaySnapshotPublisher snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Reports every rejected hunt as it happens from now on, in turn order. Quiescent days are
+     * simulated rather than skipped while reporting, so no rejection goes unreported.
+     *
+     * @param rejectionListener receives the outcome of every rejected hunt, or null to stop reporting.
+     */
+    public void setRejectionListener(Consumer<HuntOutcome> rejectionListener) {
+        this.rejectionListener = rejectionListener;
+    }
+
+    /**
+     * @return whether rejected hunts are reported as they happen.
+     */
+    boolean reportsRejections() {
+        return rejectionListener != null;
+    }
+
+    /**
+     * Runs the simulation for a number of days, stopping early if every animal died.
+     *
+     * @param days the number of days to simulate.
+     */
+    public void runSimulation(int days) {
+        runSimulation(days, this::simulateDay);
+    }
+
+    /**
+     * Runs the simulation for a number of days, skipping quiescent days with a {@link FastForward}.
+     *
+     * @param days        the number of days to simulate.
+     * @param simulateDay simulates one day.
+     */
+    void runSimulation(int days, Runnable simulateDay) {
+        store.removeDead();
+        if (huntingMode == HuntingMode.BEST_PREY) {
+            preyIndex = new PreyIndex(store);
+        }
+        if (snapshots != null) {
+            snapshots.publish(DaySnapshot.of(day, field, store));
+        }
+        FastForward fastForward = new FastForward(store, field, getHuntMetrics());
+        for (int currentDay = 1; currentDay <= days; currentDay++) {
+            if (store.isEmpty()) {
+                break;
+            }
+            beginDay();
+            int skipped = eventLog == null && breeding == null && preyIndex == null && rejectionListener == null
+                    ? fastForward.skip(days - currentDay + 1) : 0;
+            if (skipped > 0) {
+                currentDay += skipped - 1;
+                grazes += fastForward.getGrazes();
+                grazesSucceeded += fastForward.getGrazesSucceeded();
+                grassConsumed += fastForward.getGrassConsumed();
+                endDays(SimulationMetrics.Phase.FAST_FORWARD, skipped);
+                continue;
+            }
+            simulateDay.run();
+        }
+    }
+
+    /**
+     * Simulates one day: every living animal eats in queue order, then the day ends.
+     */
+    public void simulateDay() {
+        beginDay();
+        int first = store.nextLive(-1);
+        for (int i = first; i >= 0; ) {
+            int next = store.nextLive(i);
+            act(i, next < 0 ? first : next); // Circular prey selection
+            i = next;
+        }
+        endDay();
+    }
+
+    /**
+     * Lets a living animal eat: grazers graze first, then hunters attack their prey.
+     *
+     * @param animal the position of the animal whose turn it is.
+     * @param prey   the position of its prey.
+     */
+    void act(int animal, int prey) {
+        if (store.getEnergy(animal) <= 0) {
+            return;
+        }
+        byte species = store.getSpecies(animal);
+        if (registry.grazes(species)) {
+            graze(animal);
+        }
+        if (registry.hunts(species) && preyIndex != null) {
+            huntBestPrey(animal);
+        } else if (registry.hunts(species)) {
+            HuntOutcome outcome = hunt(animal, prey);
+            record(outcome);
+            if (eventLog != null) {
+                eventLog.hunt(store.getId(animal), store.getId(prey), outcome,
+                        outcome == HuntOutcome.SUCCESS ? store.getWeight(prey) : 0);
+            }
+        }
+    }
+
+    /**
+     * Starts timing a day if the engine is instrumented.
+     */
+    void beginDay() {
+        if (metrics != null) {
+            dayStartSize = store.size();
+            dayStart = System.nanoTime();
+        }
+    }
+
+    /**
+     * Ends the day: grass grows, energy decreases and dead animals are removed.
+     */
+    void endDay() {
+        if (eventLog != null) {
+            logDeaths();
+        }
+        if (preyIndex != null) {
+            unindexDeaths();
+        }
+        int slots = store.slots();
+        long born = births;
+        if (metrics == null) {
+            field.makeGrassGrow(); // Grass grows at the end of each day
+            store.decayAndRemoveDead(); // Energy decreases by 1% and dead animals are removed
+            if (breeding != null) {
+                breed();
+            }
+            reindex(slots, born);
+            endDays(null, 1);
+            return;
+        }
+        long turnsEnd = System.nanoTime();
+        metrics.recordPhase(SimulationMetrics.Phase.TURNS, turnsEnd - dayStart);
+        field.makeGrassGrow();
+        long growthEnd = System.nanoTime();
+        metrics.recordPhase(SimulationMetrics.Phase.GRASS_GROWTH, growthEnd - turnsEnd);
+        store.decayAndRemoveDead();
+        metrics.recordPhase(SimulationMetrics.Phase.DECAY_AND_REMOVAL, System.nanoTime() - growthEnd);
+        if (breeding != null) {
+            dayStartSize += breed(); // Deaths are what the population lost besides its newborns
+        }
+        reindex(slots, born);
+        endDays(null, 1);
+    }
+
+    /**
+     * Publishes the days that just ended to the metrics, if the engine is instrumented.
+     *
+     * @param phase the phase that took the time since the days began, or null if already recorded.
+     * @param days  the number of days that ended.
+     */
+    private void endDays(SimulationMetrics.Phase phase, int days) {
+        day += days;
+        if (eventLog != null) {
+            eventLog.dayEnd(day, field.getGrassAmount());
+        }
+        if (snapshots != null && snapshots.isDue(day)) {
+            snapshots.publish(DaySnapshot.of(day, field, store));
+        }
+        if (metrics == null) {
+            return;
+        }
+        if (phase != null) {
+            metrics.recordPhase(phase, System.nanoTime() - dayStart);
+        }
+        for (HuntOutcome outcome : OUTCOMES) {
+            long count = huntMetrics.getCount(outcome);
+            metrics.recordHunts(outcome, count - publishedHunts[outcome.ordinal()]);
+            publishedHunts[outcome.ordinal()] = count;
+        }
+        metrics.recordGrazes(grazes, grazesSucceeded, grassConsumed);
+        metrics.recordDeaths(dayStartSize - store.size());
+        grazes = 0;
+        grazesSucceeded = 0;
+        grassConsumed = 0;
+        metrics.publishDay(day, days);
+    }
+
+    /**
+     * Lets every living animal with enough energy give birth, in queue order. Newborns join the
+     * end of the queue in the order of their parents, whether or not the store is compacted, and
+     * reuse the slots of the animals that died, so a stable population does not allocate.
+     *
+     * @return the number of animals born.
+     */
+    private int breed() {
+        int born = 0;
+        int maxAnimals = breeding.getMaxAnimals();
+        store.reserve(Math.max(Math.min(store.size(), maxAnimals - store.size()), 0));
+        int parents = store.slots(); // Newborns do not breed on the day they are born
+        for (int i = store.nextLive(-1); i >= 0 && i < parents && store.size() < maxAnimals;
+                i = store.nextLive(i)) {
+            byte species = store.getSpecies(i);
+            float energy = store.getEnergy(i);
+            if (!breeding.breeds(species, energy)) {
+                continue;
+            }
+            float cost = breeding.getCost(species);
+            store.decrementEnergy(i, cost);
+            store.spawn(i, breeding.inheritWeight(store.getWeight(i), random),
+                    breeding.inheritSpeed(store.getSpeed(i), random), cost);
+            born++;
+        }
+        births += born;
+        return born;
+    }
+
+    /**
+     * Logs the animals that the energy decrease at the end of the day is about to kill.
+     */
+    private void logDeaths() {
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            if (store.getEnergy(i) <= 1) {
+                eventLog.death(store.getId(i));
+            }
+        }
+    }
+
+    /**
+     * Removes the animals that the energy decrease at the end of the day is about to kill from
+     * the prey index. The decrease keeps the order of the others.
+     */
+    private void unindexDeaths() {
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            if (store.getEnergy(i) <= 1 && store.getEnergy(i) > 0) { // Killed animals are out already
+                preyIndex.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the prey index if animals were born or the store was compacted today.
+     *
+     * @param slots  the number of slots of the store before the end of the day.
+     * @param births the number of animals born before the end of the day.
+     */
+    private void reindex(int slots, long births) {
+        if (preyIndex != null && (store.slots() != slots || this.births != births)) {
+            preyIndex.rebuild();
+        }
+    }
+
+    /**
+     * Lets a hunter attack the most energy-rich prey it can catch. A hunter that cannot catch
+     * any animal is counted as facing too strong a prey.
+     *
+     * @param hunter the position of the hunting animal.
+     */
+    private void huntBestPrey(int hunter) {
+        int prey = preyIndex.bestPrey(hunter);
+        if (prey < 0) {
+            record(HuntOutcome.TOO_STRONG);
+            return;
+        }
+        preyIndex.remove(prey);
+        preyIndex.remove(hunter);
+        feedOnPrey(store, hunter, prey);
+        preyIndex.add(hunter);
+        record(HuntOutcome.SUCCESS);
+    }
+
+    /**
+     * Counts grazing attempts made outside of {@link #act}, all of which found too little grass.
+     *
+     * @param attempts the number of attempts.
+     */
+    void recordFailedGrazes(long attempts) {
+        grazes += attempts;
+    }
+
+    /**
+     * Counts the outcome of a hunt, and reports it if it is a rejection and rejections are reported.
+     *
+     * @param outcome the outcome.
+     */
+    private void record(HuntOutcome outcome) {
+        huntMetrics.record(outcome);
+        if (rejectionListener != null && outcome.isRejection()) {
+            rejectionListener.accept(outcome);
+        }
+    }
+
+    /**
+     * Lets an animal graze, following the rule of {@link Herbivore#grazeInTheField}.
+     *
+     * @param grazer the position of the grazing animal.
+     */
+    private void graze(int grazer) {
+        float energyGained = grazingNeed(store, grazer);
+
+        grazes++;
+        boolean enough = field.claimGrass(energyGained);
+        if (eventLog != null) {
+            eventLog.graze(store.getId(grazer), enough, energyGained);
+        }
+        if (enough) {
+            grazesSucceeded++;
+            grassConsumed += energyGained;
+            if (preyIndex != null) {
+                preyIndex.remove(grazer);
+            }
+            store.feed(grazer, energyGained);
+            if (preyIndex != null) {
+                preyIndex.add(grazer);
+            }
+        }
+    }
+
+    /**
+     * Lets an animal hunt its neighbour, following the rules of {@link Carnivore#assessPrey}.
+     *
+     * @param hunter the position of the hunting animal.
+     * @param prey   the position of the prey.
+     * @return the outcome of the hunt.
+     */
+    private HuntOutcome hunt(int hunter, int prey) {
+        HuntOutcome outcome = assess(store, hunter, store.getEnergy(hunter), prey, store.getEnergy(prey));
+        if (outcome == HuntOutcome.SUCCESS) {
+            feedOnPrey(store, hunter, prey);
+        }
+        return outcome;
+    }
+
+    /**
+     * Applies the grazing rule of {@link Herbivore#grazeInTheField}: an animal eats a tenth of its
+     * weight, and gains as much energy, if the field holds that much grass.
+     *
+     * @param store  the population.
+     * @param grazer the position of the grazing animal.
+     * @return the grass the animal needs to eat.
+     */
+    static float grazingNeed(PopulationStore store, int grazer) {
+        return store.getWeight(grazer) / GRAZE_ENERGY_DIVISOR;
+    }
+
+    /**
+     * Applies a successful hunt, following the rule of {@link Carnivore#huntPrey}: the prey dies
+     * and the hunter gains the prey's weight in energy.
+     *
+     * @param store  the population.
+     * @param hunter the position of the hunting animal.
+     * @param prey   the position of the prey.
+     */
+    static void feedOnPrey(PopulationStore store, int hunter, int prey) {
+        store.kill(prey);
+        store.feed(hunter, store.getWeight(prey));
+    }
+
+    /**
+     * Applies the hunting rules to a hunter and its prey without changing either of them.
+     *
+     * @param store        the population.
+     * @param hunter       the position of the hunting animal.
+     * @param hunterEnergy the energy of the hunter.
+     * @param prey         the position of the prey.
+     * @param preyEnergy   the energy of the prey.
+     * @return the outcome the hunt would have.
+     */
+    static HuntOutcome assess(PopulationStore store, int hunter, float hunterEnergy, int prey, float preyEnergy) {
+        if (preyEnergy <= 0) { // Skip dead animals
+            return HuntOutcome.PREY_DEAD;
+        }
+        if (prey == hunter) { // Self-hunting is not allowed
+            return HuntOutcome.SELF_HUNTING;
+        }
+        byte hunterSpecies = store.getSpecies(hunter);
+        byte preySpecies = store.getSpecies(prey);
+        if (preySpecies == hunterSpecies) { // Cannibalism is not allowed
+            return HuntOutcome.CANNIBALISM;
+        }
+        if (!store.getRegistry().canHunt(hunterSpecies, preySpecies)) { // Not part of the hunter's diet
+            return HuntOutcome.NOT_PREY;
+        }
+        if (store.getSpeed(prey) >= store.getSpeed(hunter) && preyEnergy >= hunterEnergy) { // Prey is too strong
+            return HuntOutcome.TOO_STRONG;
+        }
+        return HuntOutcome.SUCCESS;
+    }
+}
+
+/**
+ * Skips quiescent days of a {@link PopulationStore} simulation in one pass over the animals.
+ *
+ * <p>A day is quiescent when no hunt can succeed, because there is no hunter or every animal is
+ * of the same species, and grazing cannot change: either nobody can eat (there is no grazer,
+ * or no grass, which never grows back from zero) or every animal is a grazer that eats its fill
+ * every day on a field that grows back to its maximum. Deaths never end such a phase. From then
+ * on each day only decays energy by 1 and grows the grass, so K days reduce to subtracting K,
+ * which is exact in float arithmetic for the energies in range, and the hunt outcomes and
+ * grazing attempts of those days are counted instead of simulated.
+ */
+class FastForward {
+
+    private static final float MIN_AMOUNT_GRASS = Constants.MIN_AMOUNT_GRASS.getValue();
+    private static final float MAX_AMOUNT_GRASS = Constants.MAX_AMOUNT_GRASS.getValue();
+    private static final float MAX_ENERGY = Constants.MAX_ENERGY.getValue();
+    private static final float GRAZE_ENERGY_DIVISOR = Constants.GRAZE_ENERGY_DIVISOR.getValue();
+    private static final int MAX_BACKOFF = 64;
+
+    private final PopulationStore store;
+    private final SpeciesRegistry registry;
+    private final Field field;
+    private final HuntMetrics huntMetrics;
+    private long successes;
+    private int backoff = 1;
+    private int wait;
+    private long grazes;
+    private long grazesSucceeded;
+    private double grassConsumed;
+
+    /**
+     * Creates a fast-forward for a simulation.
+     *
+     * @param store       the population.
+     * @param field       the field environment.
+     * @param huntMetrics the metrics of the simulation, which also receive the skipped hunts.
+     */
+    public FastForward(PopulationStore store, Field field, HuntMetrics huntMetrics) {
+        this.store = store;
+        this.registry = store.getRegistry();
+        this.field = field;
+        this.huntMetrics = huntMetrics;
+        this.successes = huntMetrics.getCount(HuntOutcome.SUCCESS);
+    }
+
+    /**
+     * Skips the coming days if they are quiescent. The check is only made after a day without a
+     * successful hunt, and is made less often after every failed check.
+     *
+     * @param days the number of days left to simulate.
+     * @return the number of days skipped, or zero if the next day has to be simulated.
+     */
+    public int skip(int days) {
+        recordGrazes(0, 0, 0);
+        long currentSuccesses = huntMetrics.getCount(HuntOutcome.SUCCESS);
+        if (currentSuccesses != successes) {
+            successes = currentSuccesses;
+            backoff = 1;
+            wait = 0;
+            return 0;
+        }
+        if (wait > 0) {
+            wait--;
+            return 0;
+        }
+        int skipped = trySkip(days);
+        if (skipped == 0) {
+            wait = backoff;
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        } else {
+            backoff = 1;
+        }
+        return skipped;
+    }
+
+    /**
+     * @return the number of grazing attempts on the days skipped by the last call to {@link #skip}.
+     */
+    public long getGrazes() {
+        return grazes;
+    }
+
+    /**
+     * @return the number of those grazing attempts that found enough grass.
+     */
+    public long getGrazesSucceeded() {
+        return grazesSucceeded;
+    }
+
+    /**
+     * @return the amount of grass eaten on the days skipped by the last call to {@link #skip}.
+     */
+    public double getGrassConsumed() {
+        return grassConsumed;
+    }
+
+    /**
+     * Skips the coming days if they are quiescent.
+     *
+     * @param days the number of days left to simulate.
+     * @return the number of days skipped, or zero if the simulation is not quiescent.
+     */
+    private int trySkip(int days) {
+        int first = store.nextLive(-1);
+        if (days <= 0 || first < 0) {
+            return 0;
+        }
+        byte firstSpecies = store.getSpecies(first);
+        boolean sameSpecies = true;
+        boolean anyHunter = false;
+        boolean anyGrazer = false;
+        boolean allGrazers = true;
+        for (int i = first; i >= 0; i = store.nextLive(i)) {
+            byte species = store.getSpecies(i);
+            sameSpecies &= species == firstSpecies;
+            anyHunter |= registry.hunts(species);
+            anyGrazer |= registry.grazes(species);
+            allGrazers &= registry.grazes(species);
+        }
+        if (anyHunter && !sameSpecies) {
+            return 0;
+        }
+        if (!anyGrazer || field.getGrassAmount() == 0) {
+            return decay(days, anyHunter);
+        }
+        if (allGrazers && isSaturated()) {
+            return graze(days, anyHunter);
+        }
+        return 0;
+    }
+
+    /**
+     * Checks that the field is full and every animal eats its fill today and every day after.
+     *
+     * @return whether grazing is in its steady state.
+     */
+    private boolean isSaturated() {
+        float grass = field.getGrassAmount();
+        if (grass != MAX_AMOUNT_GRASS) {
+            return false;
+        }
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            float need = store.getWeight(i) / GRAZE_ENERGY_DIVISOR;
+            if (grass < need
+                    || store.getEnergy(i) + need < MAX_ENERGY
+                    || (MAX_ENERGY - 1) + need < MAX_ENERGY) {
+                return false;
+            }
+            grass = Math.max(grass - need, MIN_AMOUNT_GRASS);
+        }
+        return Math.min(grass * 2, MAX_AMOUNT_GRASS) == MAX_AMOUNT_GRASS;
+    }
+
+    /**
+     * Skips days on which nobody eats: every animal loses 1 energy a day until it dies.
+     * The simulation stops on the day the last animal dies, so no more days are skipped.
+     *
+     * @param days      the number of days left to simulate.
+     * @param anyHunter whether the animals hunt (each other, in vain).
+     * @return the number of days skipped.
+     */
+    private int decay(int days, boolean anyHunter) {
+        int lastDeath = 0;
+        int secondLastDeath = 0;
+        long turns = 0;
+        long grazingTurns = 0;
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            // The animal takes its turn on every day it starts alive, and dies at the end of the last one
+            int deathDay = (int) Math.min(Math.ceil(store.getEnergy(i)), Integer.MAX_VALUE);
+            if (deathDay > lastDeath) {
+                secondLastDeath = lastDeath;
+                lastDeath = deathDay;
+            } else if (deathDay > secondLastDeath) {
+                secondLastDeath = deathDay;
+            }
+            turns += Math.min(deathDay, days);
+            if (registry.grazes(store.getSpecies(i))) {
+                grazingTurns += Math.min(deathDay, days);
+            }
+        }
+        int skipped = Math.min(days, lastDeath);
+
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            store.decrementEnergy(i, skipped);
+        }
+        store.removeDead();
+        for (int day = 0; day < skipped && field.getGrassAmount() != 0
+                && field.getGrassAmount() != MAX_AMOUNT_GRASS; day++) {
+            field.makeGrassGrow();
+        }
+        if (anyHunter) {
+            recordHunts(turns, Math.max(skipped - secondLastDeath, 0));
+        }
+        recordGrazes(grazingTurns, 0, 0); // Grazers find no grass, which never grows back from zero
+        return skipped;
+    }
+
+    /**
+     * Skips days on which every animal eats its fill: energy stays one below the maximum.
+     *
+     * @param days      the number of days left to simulate.
+     * @param anyHunter whether the animals hunt (each other, in vain).
+     * @return the number of days skipped.
+     */
+    private int graze(int days, boolean anyHunter) {
+        int animals = store.size();
+        double eaten = 0;
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            eaten += store.getWeight(i) / GRAZE_ENERGY_DIVISOR;
+            store.feed(i, MAX_ENERGY);
+            store.decrementEnergy(i, 1);
+        }
+        if (anyHunter) {
+            recordHunts((long) animals * days, animals == 1 ? days : 0);
+        }
+        recordGrazes((long) animals * days, (long) animals * days, eaten * days);
+        return days;
+    }
+
+    /**
+     * Records the hunts of skipped days, all rejected because every animal is of the same species.
+     *
+     * @param turns     the number of turns taken on those days.
+     * @param aloneDays the number of those days with a single animal left, which hunts itself.
+     */
+    private void recordHunts(long turns, long aloneDays) {
+        huntMetrics.record(HuntOutcome.SELF_HUNTING, aloneDays);
+        huntMetrics.record(HuntOutcome.CANNIBALISM, turns - aloneDays);
+    }
+
+    /**
+     * Records the grazing attempts of skipped days, replacing those of the previous skip.
+     *
+     * @param attempts  the number of grazing attempts.
+     * @param successes the number of them that found enough grass.
+     * @param eaten     the amount of grass eaten.
+     */
+    private void recordGrazes(long attempts, long successes, double eaten) {
+        grazes = attempts;
+        grazesSucceeded = successes;
+        grassConsumed = eaten;
+    }
+}
+
+/**
+ * Runs the daily simulation loop over a {@link PopulationStore} on a fork/join pool.
+ *
+ * <p>Grazing ties every animal to the shared grass, so the start of the queue is simulated
+ * sequentially until the field can no longer feed any grazer. From there on each animal only
+ * interacts with its neighbour, so the rest of the queue is split into segments. Every segment
+ * is first evaluated for both states its first animal may be in (alive, or killed by the
+ * previous segment), the real states are then chained from segment to segment, and finally
+ * every segment is applied in parallel. The last animal, which hunts the first one, runs last.
+ * The results are exactly those of {@link PopulationEngine}.
+ */
+class ParallelPopulationEngine {
+
+    private static final int DEFAULT_MIN_SEGMENT_SIZE = 1 << 14;
+    private static final int SEGMENTS_PER_THREAD = 4;
+    private static final float GRAZE_ENERGY_DIVISOR = Constants.GRAZE_ENERGY_DIVISOR.getValue();
+
+    private final PopulationStore store;
+    private final SpeciesRegistry registry;
+    private final Field field;
+    private final ForkJoinPool pool;
+    private final int minSegmentSize;
+    private final PopulationEngine sequential;
+
+    /**
+     * Creates an engine for the given population and field.
+     *
+     * @param store the population.
+     * @param field the field environment.
+     * @param pool  the pool running the segments.
+     */
+    public ParallelPopulationEngine(PopulationStore store, Field field, ForkJoinPool pool) {
+        this(store, field, pool, DEFAULT_MIN_SEGMENT_SIZE);
+    }
+
+    /**
+     * Creates an engine for the given population and field.
+     *
+     * @param store          the population.
+     * @param field          the field environment.
+     * @param pool           the pool running the segments.
+     * @param minSegmentSize the smallest number of animals worth handing to a separate task.
+     */
+    public ParallelPopulationEngine(PopulationStore store, Field field, ForkJoinPool pool, int minSegmentSize) {
+        this.store = store;
+        this.registry = store.getRegistry();
+        this.field = field;
+        this.pool = pool;
+        this.minSegmentSize = Math.max(minSegmentSize, 1);
+        this.sequential = new PopulationEngine(store, field);
+    }
+
+    /**
+     * @return the outcome counts of every hunt attempted by this engine.
+     */
+    public HuntMetrics getHuntMetrics() {
+        return sequential.getHuntMetrics();
+    }
+
+    /**
+     * @return the engine running the sequential parts of every day, which holds its counters.
+     */
+    PopulationEngine getSequential() {
+        return sequential;
+    }
+
+    /**
+     * Runs the simulation for a number of days, stopping early if every animal died.
+     *
+     * @param days the number of days to simulate.
+     */
+    public void runSimulation(int days) {
+        sequential.runSimulation(days, this::simulateDay);
+    }
+
+    /**
+     * Instruments the engine, as {@link PopulationEngine#setMetrics} does.
+     *
+     * @param metrics the metrics, or null to stop instrumenting.
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        sequential.setMetrics(metrics);
+    }
+
+    /**
+     * Publishes snapshots of the simulation, as {@link PopulationEngine#setSnapshotPublisher} does.
+     *
+     * @param snapshots the publisher, or null to stop publishing.
+     */
+    public void setSnapshotPublisher(DaySnapshotPublisher snapshots) {
+        sequential.setSnapshotPublisher(snapshots);
+    }
+
+    /**
+     * Lets animals breed at the end of every day, as {@link PopulationEngine#setBreedingRules} does.
+     *
+     * @param breeding the rules, or null to stop breeding.
+     */
+    public void setBreedingRules(BreedingRules breeding) {
+        sequential.setBreedingRules(breeding);
+    }
+
+    /**
+     * Sets how hunters choose their prey, as {@link PopulationEngine#setHuntingMode} does.
+     * Hunters that look beyond their neighbour may change any animal, so their days are
+     * simulated on one thread.
+     *
+     * @param huntingMode the hunting mode.
+     */
+    public void setHuntingMode(HuntingMode huntingMode) {
+        sequential.setHuntingMode(huntingMode);
+    }
+
+    /**
+     * Reports every rejected hunt as it happens, as {@link PopulationEngine#setRejectionListener}
+     * does. Rejections are reported in turn order, so days are simulated on one thread meanwhile.
+     *
+     * @param rejectionListener receives the outcome of every rejected hunt, or null to stop reporting.
+     */
+    public void setRejectionListener(Consumer<HuntOutcome> rejectionListener) {
+        sequential.setRejectionListener(rejectionListener);
+    }
+
+    /**
+     * Simulates one day with the same results as {@link PopulationEngine#simulateDay}.
+     */
+    public void simulateDay() {
+        if (sequential.getHuntingMode() != HuntingMode.NEIGHBOUR || sequential.reportsRejections()) {
+            sequential.simulateDay();
+            return;
+        }
+        sequential.beginDay();
+        int first = store.nextLive(-1);
+        int i = first;
+
+        if (store.size() > 2 * minSegmentSize) {
+            int last = store.lastLive();
+            // Once the grass is below every grazer's need, or no grazer that could eat is left,
+            // grazing can no longer change anything today.
+            int[] feedable = scanGrazers(store.slots(), field.getGrassAmount());
+            int feedableEnd = feedable[0];
+            float minNeed = Float.intBitsToFloat(feedable[1]);
+            while (i != last && i < feedableEnd && field.getGrassAmount() >= minNeed) {
+                int next = store.nextLive(i);
+                sequential.act(i, next);
+                i = next;
+            }
+            if (last - i >= 2 * minSegmentSize) {
+                actInSegments(i, last);
+                i = last;
+            }
+        }
+        while (i >= 0) {
+            int next = store.nextLive(i);
+            sequential.act(i, next < 0 ? first : next); // Circular prey selection
+            i = next;
+        }
+        sequential.endDay();
+    }
+
+    /**
+     * Finds where grazing stops mattering today.
+     *
+     * @param slots the number of slots in use.
+     * @param grass the grass available at the start of the day.
+     * @return the position after the last grazer that could eat this grass, and the bits of the
+     *         smallest amount of grass any grazer needs.
+     */
+    private int[] scanGrazers(int slots, float grass) {
+        int segments = segmentCount(slots);
+        int[] bounds = split(0, slots, segments);
+        int[] feedableEnd = new int[segments];
+        float[] minNeed = new float[segments];
+        forEachSegment(segments, k -> {
+            int end = 0;
+            float need = Float.POSITIVE_INFINITY;
+            for (int j = bounds[k]; j < bounds[k + 1]; j++) {
+                // Tombstones have no energy left, so this also skips them
+                if (store.getEnergy(j) > 0 && registry.grazes(store.getSpecies(j))) {
+                    float grazerNeed = store.getWeight(j) / GRAZE_ENERGY_DIVISOR;
+                    need = Math.min(need, grazerNeed);
+                    if (grass >= grazerNeed) {
+                        end = j + 1;
+                    }
+                }
+            }
+            feedableEnd[k] = end;
+            minNeed[k] = need;
+        });
+        int end = 0;
+        float need = Float.POSITIVE_INFINITY;
+        for (int k = 0; k < segments; k++) {
+            end = Math.max(end, feedableEnd[k]);
+            need = Math.min(need, minNeed[k]);
+        }
+        return new int[] {end, Float.floatToRawIntBits(need)};
+    }
+
+    /**
+     * Simulates the turns of the animals in {@code [from, to)}, where no grazer can eat any more.
+     *
+     * @param from the position of the first animal.
+     * @param to   the position of the animal after the last one, which has not had its turn yet.
+     */
+    private void actInSegments(int from, int to) {
+        int segments = segmentCount(to - from);
+        int[] bounds = split(from, to, segments);
+
+        // The first animal of every segment, or of a later one if the segment only holds tombstones,
+        // and its energy before its turn, which is all its predecessor sees.
+        int[] entry = new int[segments + 1];
+        float[] entryEnergy = new float[segments + 1];
+        for (int k = 0; k <= segments; k++) {
+            entry[k] = k == segments ? to : store.liveAtOrAfter(bounds[k]);
+            entryEnergy[k] = store.getEnergy(entry[k]);
+        }
+
+        boolean[] exitIfAlive = new boolean[segments];
+        boolean[] exitIfKilled = new boolean[segments];
+        forEachSegment(segments, k -> {
+            boolean aliveIfAlive = entryEnergy[k] > 0;
+            boolean aliveIfKilled = false;
+            // A segment without animals passes the state of its entry animal on unchanged
+            boolean killsIfAlive = false;
+            boolean killsIfKilled = true;
+            for (int hunter = entry[k]; hunter < bounds[k + 1]; hunter = store.nextLive(hunter)) {
+                int prey = store.nextLive(hunter);
+                float preyEnergy = prey >= bounds[k + 1] ? entryEnergy[k + 1] : store.getEnergy(prey);
+                if (aliveIfAlive == aliveIfKilled) {
+                    // Both chains agree from here on; only the entry state of the segment differed.
+                    killsIfAlive = aliveIfAlive && kills(hunter, prey, preyEnergy, k, entry, entryEnergy);
+                    killsIfKilled = killsIfAlive;
+                } else {
+                    boolean kills = kills(hunter, prey, preyEnergy, k, entry, entryEnergy);
+                    killsIfAlive = aliveIfAlive && kills;
+                    killsIfKilled = aliveIfKilled && kills;
+                }
+                aliveIfAlive = !killsIfAlive && preyEnergy > 0;
+                aliveIfKilled = !killsIfKilled && preyEnergy > 0;
+            }
+            exitIfAlive[k] = killsIfAlive;
+            exitIfKilled[k] = killsIfKilled;
+        });
+
+        boolean[] entryKilled = new boolean[segments];
+        for (int k = 1; k < segments; k++) {
+            entryKilled[k] = entryKilled[k - 1] ? exitIfKilled[k - 1] : exitIfAlive[k - 1];
+        }
+
+        HuntMetrics[] metrics = new HuntMetrics[segments];
+        long[] grazes = new long[segments];
+        forEachSegment(segments, k -> {
+            HuntMetrics segmentMetrics = new HuntMetrics();
+            long segmentGrazes = 0;
+            boolean alive = !entryKilled[k] && entryEnergy[k] > 0;
+            for (int hunter = entry[k]; hunter < bounds[k + 1]; hunter = store.nextLive(hunter)) {
+                int prey = store.nextLive(hunter);
+                float preyEnergy = prey >= bounds[k + 1] ? entryEnergy[k + 1] : store.getEnergy(prey);
+                boolean killed = false;
+                if (alive && registry.grazes(store.getSpecies(hunter))) {
+                    segmentGrazes++; // Always in vain, since no grazer here can eat any more
+                }
+                if (alive && registry.hunts(store.getSpecies(hunter))) {
+                    float hunterEnergy = hunter == entry[k] ? entryEnergy[k] : store.getEnergy(hunter);
+                    HuntOutcome outcome = PopulationEngine.assess(store, hunter, hunterEnergy, prey, preyEnergy);
+                    segmentMetrics.record(outcome);
+                    if (outcome == HuntOutcome.SUCCESS) {
+                        PopulationEngine.feedOnPrey(store, hunter, prey);
+                        killed = true;
+                    }
+                }
+                alive = !killed && preyEnergy > 0;
+            }
+            metrics[k] = segmentMetrics;
+            grazes[k] = segmentGrazes;
+        });
+        for (int k = 0; k < segments; k++) {
+            getHuntMetrics().add(metrics[k]);
+            sequential.recordFailedGrazes(grazes[k]);
+        }
+    }
+
+    /**
+     * Checks whether a living animal kills its prey, without changing either of them.
+     *
+     * @param hunter      the position of the animal.
+     * @param prey        the position of its prey.
+     * @param preyEnergy  the energy of the prey before the animal's turn.
+     * @param segment     the segment of the animal.
+     * @param entry       the first animal of every segment.
+     * @param entryEnergy the energy of every segment's first animal before its turn.
+     * @return whether the prey is killed.
+     */
+    private boolean kills(int hunter, int prey, float preyEnergy, int segment, int[] entry, float[] entryEnergy) {
+        if (!registry.hunts(store.getSpecies(hunter))) {
+            return false;
+        }
+        float hunterEnergy = hunter == entry[segment] ? entryEnergy[segment] : store.getEnergy(hunter);
+        return PopulationEngine.assess(store, hunter, hunterEnergy, prey, preyEnergy) == HuntOutcome.SUCCESS;
+    }
+
+    /**
+     * @param animals the number of animals to split.
+     * @return the number of segments to split them into.
+     */
+    private int segmentCount(int animals) {
+        int byThreads = pool.getParallelism() * SEGMENTS_PER_THREAD;
+        return Math.max(1, Math.min(byThreads, animals / minSegmentSize));
+    }
+
+    /**
+     * Splits {@code [from, to)} into segments of nearly equal size.
+     *
+     * @param from     the first position.
+     * @param to       the position after the last one.
+     * @param segments the number of segments.
+     * @return the segment bounds; segment {@code k} is {@code [bounds[k], bounds[k + 1])}.
+     */
+    private static int[] split(int from, int to, int segments) {
+        int[] bounds = new int[segments + 1];
+        for (int k = 0; k <= segments; k++) {
+            bounds[k] = from + (int) ((long) (to - from) * k / segments);
+        }
+        return bounds;
+    }
+
+    /**
+     * Runs a task for every segment on the pool and waits for all of them.
+     *
+     * @param segments the number of segments.
+     * @param task     the task, given the segment number.
+     */
+    private void forEachSegment(int segments, IntConsumer task) {
+        pool.invoke(new SegmentTask(0, segments, task));
+    }
+
+    /**
+     * Splits a range of segments in halves until every task handles one segment.
+     */
+    private static final class SegmentTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final transient IntConsumer task;
+
+        /**
+         * @param from the first segment.
+         * @param to   the segment after the last one.
+         * @param task the task, given the segment number.
+         */
+        SegmentTask(int from, int to, IntConsumer task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                task.accept(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SegmentTask(from, middle, task), new SegmentTask(middle, to, task));
+        }
+    }
+}
+
+/**
+ * An animal on its way from one region of an {@link Ecosystem} to another.
+ */
+final class Migrant {
+
+    private final int source;
+    private final byte species;
+    private final float weight;
+    private final float speed;
+    private final float energy;
+
+    /**
+     * @param source  the region the animal leaves.
+     * @param species the species code of the animal.
+     * @param weight  the weight of the animal.
+     * @param speed   the speed of the animal.
+     * @param energy  the energy of the animal.
+     */
+    Migrant(int source, byte species, float weight, float speed, float energy) {
+        this.source = source;
+        this.species = species;
+        this.weight = weight;
+        this.speed = speed;
+        this.energy = energy;
+    }
+
+    /**
+     * @return the region the animal leaves.
+     */
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * Appends the animal to the end of a population.
+     *
+     * @param population the population of the region the animal arrives in.
+     */
+    void settle(PopulationStore population) {
+        try {
+            population.add(species, weight, speed, energy);
+        } catch (WeightOutOfBoundsException | SpeedOutOfBoundsException | EnergyOutOfBoundsException e) {
+            throw new IllegalStateException(e); // The animal was valid in its previous region
+        }
+    }
+}
+
+/**
+ * Unbounded lock-free queue of migrants with many producers and a single consumer.
+ *
+ * <p>Producers swap themselves in as the tail with one atomic exchange and then link the
+ * previous tail to their node, so offering never blocks or retries; the consumer follows the
+ * links from a sentinel head that only it touches. Migrants offered by one producer are polled
+ * in the order it offered them. A node whose link is not written yet ends {@link #poll} early,
+ * so the queue is only guaranteed to be drained once every producer has returned.
+ */
+final class MigrationQueue {
+
+    private final AtomicReference<Node> tail;
+    private Node head;
+
+    /**
+     * Creates an empty queue.
+     */
+    MigrationQueue() {
+        head = new Node(null);
+        tail = new AtomicReference<>(head);
+    }
+
+    /**
+     * Adds a migrant at the end of the queue. May be called from any thread.
+     *
+     * @param migrant the migrant.
+     */
+    public void offer(Migrant migrant) {
+        Node node = new Node(migrant);
+        tail.getAndSet(node).next = node;
+    }
+
+    /**
+     * Removes the migrant at the head of the queue. Must only be called by the consumer.
+     *
+     * @return the migrant, or null if the queue is empty.
+     */
+    public Migrant poll() {
+        Node next = head.next;
+        if (next == null) {
+            return null;
+        }
+        Migrant migrant = next.migrant;
+        next.migrant = null; // The node becomes the sentinel
+        head = next;
+        return migrant;
+    }
+
+    /**
+     * A link of the queue.
+     */
+    private static final class Node {
+
+        private Migrant migrant;
+        private volatile Node next;
+
+        /**
+         * @param migrant the migrant, or null for the sentinel.
+         */
+        Node(Migrant migrant) {
+            this.migrant = migrant;
+        }
+    }
+}
+
+/**
+ * Simulates a population split into regions, each with its own field, that run in parallel on
+ * a work-stealing pool and exchange animals periodically.
+ *
+ * <p>Regions follow the rules of {@link PopulationEngine} independently: animals graze on the
+ * grass of their region and hunt the next animal of its queue. After every migration interval
+ * each region sends an evenly spaced fraction of its living animals to its neighbours on a
+ * ring, alternating between the next and the previous region, through their
+ * {@link MigrationQueue}s. Arrivals join the end of the queue ordered by the region they come
+ * from, then by their order there, so the results depend only on the inputs and never on how
+ * the regions were scheduled.
+ */
+class Ecosystem {
+
+    /**
+     * The number of days between two migrations when none is given.
+     */
+    static final int DEFAULT_MIGRATION_INTERVAL = 5;
+
+    /**
+     * The fraction of the animals of a region that leave it at every migration when none is given.
+     */
+    static final double DEFAULT_MIGRATION_RATE = 0.1;
+
+    private final Region[] regions;
+    private final int migrationInterval;
+    private final double migrationRate;
+    private final ForkJoinPool pool;
+    private long migrations;
+
+    /**
+     * Splits a population into regions of nearly equal size, keeping the queue order: the first
+     * animals go to the first region and so on. Every region starts with the same grass.
+     *
+     * @param grassAmount       the initial amount of grass of every region.
+     * @param population        the animals, which are copied.
+     * @param regions           the number of regions.
+     * @param migrationInterval the number of days between two migrations.
+     * @param migrationRate     the fraction of the animals of a region that leave it at every migration.
+     * @param pool              the pool running the regions.
+     * @throws GrassOutOfBoundsException if the grass amount is out of bounds.
+     * @throws IllegalArgumentException  if there is no region, the interval is not positive or
+     *                                   the rate is not between 0 and 1.
+     */
+    public Ecosystem(float grassAmount, PopulationStore population, int regions, int migrationInterval,
+            double migrationRate, ForkJoinPool pool) throws GrassOutOfBoundsException {
+        if (regions < 1) {
+            throw new IllegalArgumentException("An ecosystem has at least one region");
+        }
+        if (migrationInterval < 1) {
+            throw new IllegalArgumentException("The migration interval must be positive");
+        }
+        if (!(migrationRate >= 0 && migrationRate <= 1)) {
+            throw new IllegalArgumentException("The migration rate must be between 0 and 1");
+        }
+        this.regions = new Region[regions];
+        this.migrationInterval = migrationInterval;
+        this.migrationRate = migrationRate;
+        this.pool = pool;
+        int size = population.size();
+        int rank = 0;
+        int i = population.nextLive(-1);
+        for (int r = 0; r < regions; r++) {
+            int end = (int) ((long) size * (r + 1) / regions);
+            PopulationStore store = new PopulationStore(Math.max(end - rank, 1), population.getRegistry());
+            for (; rank < end; rank++, i = population.nextLive(i)) {
+                new Migrant(r, population.getSpecies(i), population.getWeight(i), population.getSpeed(i),
+                        population.getEnergy(i)).settle(store);
+            }
+            this.regions[r] = new Region(store, new Field(grassAmount));
+        }
+    }
+
+    /**
+     * Runs the simulation for a number of days, migrating after every interval except the last.
+     *
+     * @param days the number of days to simulate.
+     */
+    public void run(int days) {
+        for (int remaining = days; remaining > 0; ) {
+            int interval = Math.min(migrationInterval, remaining);
+            forEachRegion(r -> regions[r].engine.runSimulation(interval));
+            remaining -= interval;
+            if (remaining > 0 && regions.length > 1 && migrationRate > 0) {
+                migrate();
+            }
+        }
+    }
+
+    /**
+     * Moves animals between neighbouring regions: every region first sends its migrants, then,
+     * once all of them are sent, every region takes in its arrivals.
+     */
+    private void migrate() {
+        long[] sent = new long[regions.length];
+        forEachRegion(r -> sent[r] = emigrate(r));
+        forEachRegion(this::immigrate);
+        for (long count : sent) {
+            migrations += count;
+        }
+    }
+
+    /**
+     * Sends the migrants of a region to its neighbours and removes them from it.
+     *
+     * @param r the region.
+     * @return the number of migrants sent.
+     */
+    private int emigrate(int r) {
+        PopulationStore store = regions[r].store;
+        int sent = 0;
+        long rank = 0;
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i), rank++) {
+            // Animals at evenly spaced ranks leave, as many as the rate asks for
+            if ((long) ((rank + 1) * migrationRate) == (long) (rank * migrationRate)) {
+                continue;
+            }
+            int destination = Math.floorMod(r + ((sent & 1) == 0 ? 1 : -1), regions.length);
+            regions[destination].arrivals.offer(new Migrant(r, store.getSpecies(i), store.getWeight(i),
+                    store.getSpeed(i), store.getEnergy(i)));
+            store.kill(i);
+            sent++;
+        }
+        store.removeDead();
+        return sent;
+    }
+
+    /**
+     * Appends the arrivals of a region to its queue, ordered by the region they come from.
+     *
+     * @param r the region.
+     */
+    private void immigrate(int r) {
+        Region region = regions[r];
+        ArrayList<Migrant> arrivals = new ArrayList<>();
+        for (Migrant migrant = region.arrivals.poll(); migrant != null; migrant = region.arrivals.poll()) {
+            arrivals.add(migrant);
+        }
+        arrivals.sort(Comparator.comparingInt(Migrant::getSource)); // Stable, so each source keeps its order
+        for (Migrant migrant : arrivals) {
+            migrant.settle(region.store);
+        }
+    }
+
+    /**
+     * Runs a task for every region on the pool and waits for all of them.
+     *
+     * @param task the task, given the region number.
+     */
+    private void forEachRegion(IntConsumer task) {
+        pool.invoke(new RegionTask(0, regions.length, task));
+    }
+
+    /**
+     * @return the number of regions.
+     */
+    public int getRegionCount() {
+        return regions.length;
+    }
+
+    /**
+     * @param region the region number.
+     * @return the population of the region.
+     */
+    public PopulationStore getPopulation(int region) {
+        return regions[region].store;
+    }
+
+    /**
+     * @param region the region number.
+     * @return the field of the region.
+     */
+    public Field getField(int region) {
+        return regions[region].field;
+    }
+
+    /**
+     * @return the number of living animals of every region.
+     */
+    public int size() {
+        int size = 0;
+        for (Region region : regions) {
+            size += region.store.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of animals that moved to another region so far.
+     */
+    public long getMigrations() {
+        return migrations;
+    }
+
+    /**
+     * @return the outcome counts of every hunt attempted in every region.
+     */
+    public HuntMetrics getHuntMetrics() {
+        HuntMetrics huntMetrics = new HuntMetrics();
+        for (Region region : regions) {
+            huntMetrics.add(region.engine.getHuntMetrics());
+        }
+        return huntMetrics;
+    }
+
+    /**
+     * One field with its population and the queue of animals on their way to it.
+     */
+    private static final class Region {
+
+        private final PopulationStore store;
+        private final Field field;
+        private final PopulationEngine engine;
+        private final MigrationQueue arrivals = new MigrationQueue();
+
+        /**
+         * @param store the population of the region.
+         * @param field the field of the region.
+         */
+        Region(PopulationStore store, Field field) {
+            this.store = store;
+            this.field = field;
+            this.engine = new PopulationEngine(store, field);
+        }
+    }
+
+    /**
+     * Splits a range of regions in halves until every task handles one region, so idle workers
+     * steal the regions left by busy ones.
+     */
+    private static final class RegionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final transient IntConsumer task;
+
+        /**
+         * @param from the first region.
+         * @param to   the region after the last one.
+         * @param task the task, given the region number.
+         */
+        RegionTask(int from, int to, IntConsumer task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                task.accept(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RegionTask(from, middle, task), new RegionTask(middle, to, task));
+        }
+    }
+}
+
+/**
+ * A landscape of grass cells, one unit wide, for the spatial simulation mode.
+ * Each cell holds its own amount of grass, following the rules of {@link Field}.
+ */
+class GrassGrid {
+
+    private static final float MIN_AMOUNT_GRASS = Constants.MIN_AMOUNT_GRASS.getValue();
+    private static final float MAX_AMOUNT_GRASS = Constants.MAX_AMOUNT_GRASS.getValue();
+
+    private final int columns;
+    private final int rows;
+    private final float[] cells;
+
+    /**
+     * Creates a grid where every cell starts with the same amount of grass.
+     *
+     * @param columns     the width of the landscape, in cells.
+     * @param rows        the height of the landscape, in cells.
+     * @param grassAmount the initial amount of grass of every cell.
+     * @throws GrassOutOfBoundsException if the grass amount is out of bounds.
+     */
+    public GrassGrid(int columns, int rows, float grassAmount) throws GrassOutOfBoundsException {
+        if (grassAmount < MIN_AMOUNT_GRASS || grassAmount > MAX_AMOUNT_GRASS) {
+            throw new GrassOutOfBoundsException();
+        }
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("The grid needs at least one cell");
+        }
+        this.columns = columns;
+        this.rows = rows;
+        this.cells = new float[Math.multiplyExact(columns, rows)];
+        Arrays.fill(cells, grassAmount);
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Finds the cell under a point; points outside the landscape belong to the nearest edge cell.
+     *
+     * @param x the horizontal coordinate.
+     * @param y the vertical coordinate.
+     * @return the index of the cell.
+     */
+    public int cellAt(float x, float y) {
+        int column = Math.min(Math.max((int) x, 0), columns - 1);
+        int row = Math.min(Math.max((int) y, 0), rows - 1);
+        return row * columns + column;
+    }
+
+    /**
+     * @param cell the index of a cell.
+     * @return the amount of grass in the cell.
+     */
+    public float getGrassAmount(int cell) {
+        return cells[cell];
+    }
+
+    /**
+     * @return the amount of grass on the whole landscape.
+     */
+    public double getTotalGrassAmount() {
+        double total = 0;
+        for (float grass : cells) {
+            total += grass;
+        }
+        return total;
+    }
+
+    /**
+     * Eats grass from a cell if it holds at least the amount needed.
+     *
+     * @param cell   the index of the cell.
+     * @param amount the amount of grass to eat.
+     * @return whether the grass was eaten.
+     */
+    public boolean graze(int cell, float amount) {
+        if (cells[cell] < amount) {
+            return false;
+        }
+        cells[cell] = Math.max(cells[cell] - amount, MIN_AMOUNT_GRASS);
+        return true;
+    }
+
+    /**
+     * Doubles the grass of every cell, capped at the maximum allowed value.
+     */
+    public void makeGrassGrow() {
+        EndOfDayKernel.growGrass(cells, cells.length);
+    }
+}
+
+/**
+ * Uniform-grid index of the living animals of a {@link PopulationStore}, for finding the
+ * animals near a point without scanning the whole population.
+ *
+ * <p>The landscape is cut into square buckets as wide as the search radius, so every animal
+ * within the radius of a point lies in the 3x3 buckets around it. Animals are sorted into the
+ * buckets with a counting sort, so each bucket lists its animals in queue order. Their
+ * positions and species are copied next to them, so a search reads contiguous memory.
+ */
+class SpatialIndex {
+
+    private final float radius;
+    private final int columns;
+    private final int rows;
+    private final int[] bucketStart;
+    private int[] members = new int[0];
+    private float[] memberX = new float[0];
+    private float[] memberY = new float[0];
+    private byte[] memberSpecies = new byte[0];
+
+    /**
+     * Creates an empty index.
+     *
+     * @param width  the width of the landscape.
+     * @param height the height of the landscape.
+     * @param radius the largest search radius.
+     */
+    public SpatialIndex(float width, float height, float radius) {
+        if (!(radius > 0)) {
+            throw new IllegalArgumentException("The search radius must be positive");
+        }
+        this.radius = radius;
+        this.columns = Math.max((int) Math.ceil(width / radius), 1);
+        this.rows = Math.max((int) Math.ceil(height / radius), 1);
+        this.bucketStart = new int[Math.multiplyExact(columns, rows) + 1];
+    }
+
+    /**
+     * @param coordinate a coordinate.
+     * @param buckets    the number of buckets along its axis.
+     * @return the bucket holding the coordinate, clamped to the landscape.
+     */
+    private int bucketOf(float coordinate, int buckets) {
+        return Math.min(Math.max((int) (coordinate / radius), 0), buckets - 1);
+    }
+
+    /**
+     * Indexes every living animal of the store at its current position.
+     *
+     * @param store the population.
+     */
+    public void rebuild(PopulationStore store) {
+        if (members.length < store.size()) {
+            members = new int[store.size()];
+            memberX = new float[store.size()];
+            memberY = new float[store.size()];
+            memberSpecies = new byte[store.size()];
+        }
+        Arrays.fill(bucketStart, 0);
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            bucketStart[bucketOf(store, i) + 1]++;
+        }
+        for (int b = 1; b < bucketStart.length; b++) {
+            bucketStart[b] += bucketStart[b - 1];
+        }
+        // Use the start offsets as cursors, which leaves each one at the start of the next bucket
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            int m = bucketStart[bucketOf(store, i)]++;
+            members[m] = i;
+            memberX[m] = store.getX(i);
+            memberY[m] = store.getY(i);
+            memberSpecies[m] = store.getSpecies(i);
+        }
+        System.arraycopy(bucketStart, 0, bucketStart, 1, bucketStart.length - 1);
+        bucketStart[0] = 0;
+    }
+
+    /**
+     * @param store the population.
+     * @param index the position of an animal.
+     * @return the bucket holding the animal.
+     */
+    private int bucketOf(PopulationStore store, int index) {
+        return bucketOf(store.getY(index), rows) * columns + bucketOf(store.getX(index), columns);
+    }
+
+    /**
+     * Finds the nearest living animal the hunter may hunt within the search radius.
+     * Animals at the same distance are ordered by their position in the queue.
+     *
+     * @param store  the population, as indexed by the last {@link #rebuild}.
+     * @param hunter the position of the hunter.
+     * @return the position of the prey, or -1 if there is none in range.
+     */
+    public int nearestPrey(PopulationStore store, int hunter) {
+        float x = store.getX(hunter);
+        float y = store.getY(hunter);
+        long preyMask = store.getRegistry().getPreyMask(store.getSpecies(hunter));
+        int column = bucketOf(x, columns);
+        int row = bucketOf(y, rows);
+        float bestDistance = radius * radius;
+        int best = -1;
+        for (int r = Math.max(row - 1, 0); r <= Math.min(row + 1, rows - 1); r++) {
+            for (int c = Math.max(column - 1, 0); c <= Math.min(column + 1, columns - 1); c++) {
+                int bucket = r * columns + c;
+                for (int m = bucketStart[bucket]; m < bucketStart[bucket + 1]; m++) {
+                    float dx = memberX[m] - x;
+                    float dy = memberY[m] - y;
+                    float distance = dx * dx + dy * dy;
+                    if (distance > bestDistance || (preyMask >>> memberSpecies[m] & 1) == 0) {
+                        continue;
+                    }
+                    int candidate = members[m];
+                    if ((distance < bestDistance || best < 0 || candidate < best) && store.getEnergy(candidate) > 0) {
+                        bestDistance = distance;
+                        best = candidate;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+}
+
+/**
+ * Runs the daily simulation loop on a landscape: grazers eat from the grass cell they stand on,
+ * and hunters attack the nearest animal they may hunt within their hunting radius instead
+ * of their neighbour in the queue. Otherwise the rules are those of {@link PopulationEngine}.
+ */
+class SpatialEngine {
+
+    private static final float GRAZE_ENERGY_DIVISOR = Constants.GRAZE_ENERGY_DIVISOR.getValue();
+
+    private final PopulationStore store;
+    private final SpeciesRegistry registry;
+    private final GrassGrid grid;
+    private final SpatialIndex index;
+    private final HuntMetrics huntMetrics = new HuntMetrics();
+
+    /**
+     * Creates an engine for animals placed on a landscape.
+     *
+     * @param store      the population, with positions.
+     * @param grid       the grass of the landscape.
+     * @param huntRadius how far away a hunter finds its prey.
+     */
+    public SpatialEngine(PopulationStore store, GrassGrid grid, float huntRadius) {
+        this.store = store;
+        this.registry = store.getRegistry();
+        this.grid = grid;
+        this.index = new SpatialIndex(grid.getColumns(), grid.getRows(), huntRadius);
+    }
+
+    /**
+     * @return the outcome counts of every hunt attempted by this engine.
+     */
+    public HuntMetrics getHuntMetrics() {
+        return huntMetrics;
+    }
+
+    /**
+     * Runs the simulation for a number of days, stopping early if every animal died.
+     *
+     * @param days the number of days to simulate.
+     */
+    public void runSimulation(int days) {
+        store.removeDead();
+        for (int currentDay = 1; currentDay <= days; currentDay++) {
+            if (store.isEmpty()) {
+                break;
+            }
+            simulateDay();
+        }
+    }
+
+    /**
+     * Simulates one day: every living animal eats in queue order, then the day ends.
+     */
+    public void simulateDay() {
+        index.rebuild(store);
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            if (store.getEnergy(i) <= 0) {
+                continue;
+            }
+            byte species = store.getSpecies(i);
+            if (registry.grazes(species)) {
+                float energyGained = store.getWeight(i) / GRAZE_ENERGY_DIVISOR;
+                if (grid.graze(grid.cellAt(store.getX(i), store.getY(i)), energyGained)) {
+                    store.feed(i, energyGained);
+                }
+            }
+            if (registry.hunts(species)) {
+                int prey = index.nearestPrey(store, i);
+                if (prey >= 0) {
+                    huntMetrics.record(hunt(i, prey));
+                }
+            }
+        }
+        grid.makeGrassGrow();
+        store.decayAndRemoveDead();
+    }
+
+    /**
+     * Lets an animal hunt, following the rules of {@link Carnivore#assessPrey}.
+     *
+     * @param hunter the position of the hunting animal.
+     * @param prey   the position of the prey.
+     * @return the outcome of the hunt.
+     */
+    private HuntOutcome hunt(int hunter, int prey) {
+        HuntOutcome outcome = PopulationEngine.assess(store, hunter, store.getEnergy(hunter), prey, store.getEnergy(prey));
+        if (outcome == HuntOutcome.SUCCESS) {
+            store.kill(prey);
+            store.feed(hunter, store.getWeight(prey));
+        }
+        return outcome;
+    }
+}
+
+/**
+ * Sources of randomness of a stochastic simulation. With a hunt success probability of 1, no
+ * growth variation and a fixed turn order, the rules are the deterministic ones.
+ */
+class StochasticRules {
+
+    private final double huntSuccess;
+    private final double growthVariation;
+    private final boolean shuffleOrder;
+
+    /**
+     * Initializes the rules.
+     *
+     * @param huntSuccess     the probability that a hunt allowed by the rules succeeds.
+     * @param growthVariation how far the daily grass growth factor varies around 2, between 0 and 1.
+     * @param shuffleOrder    whether the animals take their turns in a new random order every day.
+     */
+    public StochasticRules(double huntSuccess, double growthVariation, boolean shuffleOrder) {
+        if (!(huntSuccess >= 0 && huntSuccess <= 1) || !(growthVariation >= 0 && growthVariation <= 1)) {
+            throw new IllegalArgumentException("Probabilities and variations must be between 0 and 1");
+        }
+        this.huntSuccess = huntSuccess;
+        this.growthVariation = growthVariation;
+        this.shuffleOrder = shuffleOrder;
+    }
+
+    /**
+     * @return the probability that a hunt allowed by the rules succeeds.
+     */
+    public double getHuntSuccess() {
+        return huntSuccess;
+    }
+
+    /**
+     * @return how far the daily grass growth factor varies around 2.
+     */
+    public double getGrowthVariation() {
+        return growthVariation;
+    }
+
+    /**
+     * @return whether the animals take their turns in a new random order every day.
+     */
+    public boolean isShuffleOrder() {
+        return shuffleOrder;
+    }
+}
+
+/**
+ * Runs the daily simulation loop of {@link PopulationEngine} with randomness drawn from one
+ * random stream: hunts allowed by the rules may fail, the grass growth factor varies, and the
+ * turn order may be shuffled every day, each animal then hunting the next one in that order.
+ */
+class StochasticEngine {
+
+    private final PopulationStore store;
+    private final SpeciesRegistry registry;
+    private final Field field;
+    private final StochasticRules rules;
+    private final SplittableRandom random;
+    private final HuntMetrics huntMetrics = new HuntMetrics();
+    private int[] order = new int[0];
+
+    /**
+     * Creates an engine for the given population and field.
+     *
+     * @param store  the population.
+     * @param field  the field environment.
+     * @param rules  the sources of randomness.
+     * @param random the random stream of this simulation.
+     */
+    public StochasticEngine(PopulationStore store, Field field, StochasticRules rules, SplittableRandom random) {
+        this.store = store;
+        this.registry = store.getRegistry();
+        this.field = field;
+        this.rules = rules;
+        this.random = random;
+    }
+
+    /**
+     * @return the outcome counts of every hunt attempted by this engine.
+     */
+    public HuntMetrics getHuntMetrics() {
+        return huntMetrics;
+    }
+
+    /**
+     * @return the current amount of grass.
+     */
+    public float getGrassAmount() {
+        return field.getGrassAmount();
+    }
+
+    /**
+     * Simulates one day: every living animal eats in turn order, then the day ends.
+     */
+    public void simulateDay() {
+        int count = 0;
+        if (order.length < store.size()) {
+            order = new int[store.slots()];
+        }
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            order[count++] = i;
+        }
+        if (rules.isShuffleOrder()) {
+            for (int i = count - 1; i > 0; i--) { // Fisher-Yates
+                int j = random.nextInt(i + 1);
+                int swapped = order[i];
+                order[i] = order[j];
+                order[j] = swapped;
+            }
+        }
+        for (int turn = 0; turn < count; turn++) {
+            act(order[turn], order[turn + 1 < count ? turn + 1 : 0]);
+        }
+        field.makeGrassGrow(2 + rules.getGrowthVariation() * (2 * random.nextDouble() - 1));
+        store.decayAndRemoveDead();
+    }
+
+    /**
+     * Lets a living animal graze and hunt with the rules of {@link PopulationEngine#act}, except
+     * that a hunt the rules allow fails with the probability of the stochastic rules.
+     *
+     * @param animal the position of the animal whose turn it is.
+     * @param prey   the position of its prey.
+     */
+    private void act(int animal, int prey) {
+        if (store.getEnergy(animal) <= 0) {
+            return;
+        }
+        byte species = store.getSpecies(animal);
+        if (registry.grazes(species)) {
+            float energyGained = PopulationEngine.grazingNeed(store, animal);
+            if (field.claimGrass(energyGained)) {
+                store.feed(animal, energyGained);
+            }
+        }
+        if (registry.hunts(species)) {
+            HuntOutcome outcome = PopulationEngine.assess(store, animal, store.getEnergy(animal), prey, store.getEnergy(prey));
+            if (outcome == HuntOutcome.SUCCESS && random.nextDouble() >= rules.getHuntSuccess()) {
+                outcome = HuntOutcome.ESCAPED;
+            }
+            if (outcome == HuntOutcome.SUCCESS) {
+                PopulationEngine.feedOnPrey(store, animal, prey);
+            }
+            huntMetrics.record(outcome);
+        }
+    }
+}
+
+/**
+ * Mean and variance of a stream of values, updated one value at a time with Welford's method
+ * and merged with the parallel formula of Chan et al., without keeping the values.
+ */
+class RunningStatistics {
+
+    /** The two-sided 95% quantile of the normal distribution. */
+    private static final double Z_95 = 1.959964;
+
+    private long count;
+    private double mean;
+    private double squaredDeviations;
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value.
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (value - mean);
+    }
+
+    /**
+     * Adds every value seen by other statistics.
+     *
+     * @param other the statistics to merge.
+     */
+    public void merge(RunningStatistics other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        squaredDeviations += other.squaredDeviations + delta * delta * count * other.count / total;
+        count = total;
+    }
+
+    /**
+     * @return the number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean, or NaN without values.
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * @return the sample variance, or NaN with fewer than two values.
+     */
+    public double getVariance() {
+        return count < 2 ? Double.NaN : squaredDeviations / (count - 1);
+    }
+
+    /**
+     * @return the half-width of the 95% confidence interval of the mean, by the normal approximation.
+     */
+    public double getConfidenceHalfWidth() {
+        return Z_95 * Math.sqrt(getVariance() / count);
+    }
+}
+
+/**
+ * Statistics of the replicas of an ensemble, per day and species: how many animals are alive
+ * and their mean energy, plus the distribution of survivors after the last day. The memory
+ * used depends on the number of days and species, not on the number of replicas.
+ */
+class EnsembleStatistics {
+
+    private final int days;
+    private final int species;
+    private final RunningStatistics[] alive;
+    private final RunningStatistics[] energy;
+    private final long[][] survivors;
+    private final int[] dayCount;
+    private final double[] dayEnergySum;
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param days    the number of days of every replica.
+     * @param species the number of species.
+     */
+    public EnsembleStatistics(int days, int species) {
+        this.days = days;
+        this.species = species;
+        this.alive = new RunningStatistics[days * species];
+        this.energy = new RunningStatistics[days * species];
+        for (int i = 0; i < alive.length; i++) {
+            alive[i] = new RunningStatistics();
+            energy[i] = new RunningStatistics();
+        }
+        this.survivors = new long[species][1];
+        this.dayCount = new int[species];
+        this.dayEnergySum = new double[species];
+    }
+
+    /**
+     * Records the state of a replica at the end of a day.
+     *
+     * @param day   the day, from 1.
+     * @param store the population of the replica.
+     */
+    public void recordDay(int day, PopulationStore store) {
+        int[] count = dayCount;
+        double[] energySum = dayEnergySum;
+        Arrays.fill(count, 0);
+        Arrays.fill(energySum, 0);
+        for (int i = store.nextLive(-1); i >= 0; i = store.nextLive(i)) {
+            count[store.getSpecies(i)]++;
+            energySum[store.getSpecies(i)] += store.getEnergy(i);
+        }
+        int base = (day - 1) * species;
+        for (int s = 0; s < species; s++) {
+            alive[base + s].add(count[s]);
+            if (count[s] > 0) {
+                energy[base + s].add(energySum[s] / count[s]);
+            }
+        }
+        if (day == days) {
+            for (int s = 0; s < species; s++) {
+                if (survivors[s].length <= count[s]) {
+                    survivors[s] = Arrays.copyOf(survivors[s], count[s] + 1);
+                }
+                survivors[s][count[s]]++;
+            }
+        }
+    }
+
+    /**
+     * Records the days after a replica died out, when nobody is alive any more.
+     *
+     * @param fromDay the first day without animals.
+     */
+    public void recordExtinction(int fromDay) {
+        for (int day = fromDay; day <= days; day++) {
+            for (int s = 0; s < species; s++) {
+                alive[(day - 1) * species + s].add(0);
+            }
+        }
+        for (int s = 0; s < species; s++) {
+            survivors[s][0]++;
+        }
+    }
+
+    /**
+     * Adds the replicas recorded by other statistics.
+     *
+     * @param other statistics of the same days and species.
+     */
+    public void merge(EnsembleStatistics other) {
+        for (int i = 0; i < alive.length; i++) {
+            alive[i].merge(other.alive[i]);
+            energy[i].merge(other.energy[i]);
+        }
+        for (int s = 0; s < species; s++) {
+            if (survivors[s].length < other.survivors[s].length) {
+                survivors[s] = Arrays.copyOf(survivors[s], other.survivors[s].length);
+            }
+            for (int k = 0; k < other.survivors[s].length; k++) {
+                survivors[s][k] += other.survivors[s][k];
+            }
+        }
+    }
+
+    /**
+     * @param day     the day, from 1.
+     * @param species the species code.
+     * @return the number of animals of the species alive at the end of the day, over the replicas.
+     */
+    public RunningStatistics getAlive(int day, int species) {
+        return alive[(day - 1) * this.species + species];
+    }
+
+    /**
+     * @param day     the day, from 1.
+     * @param species the species code.
+     * @return the mean energy of the living animals of the species at the end of the day, over
+     *         the replicas where some were alive.
+     */
+    public RunningStatistics getEnergy(int day, int species) {
+        return energy[(day - 1) * this.species + species];
+    }
+
+    /**
+     * @param species the species code.
+     * @return the number of replicas that ended with each number of survivors of the species.
+     */
+    public long[] getSurvivors(int species) {
+        return survivors[species].clone();
+    }
+}
+
+/**
+ * Runs many replicas of a scenario under {@link StochasticRules} on every core and aggregates
+ * them into {@link EnsembleStatistics}.
+ *
+ * <p>Each replica draws from its own {@link SplittableRandom}, seeded from the ensemble seed and
+ * the replica number, and replicas are aggregated in fixed-size blocks merged in order, so the
+ * results depend on the seed only, not on the number of threads or on scheduling. At most one
+ * block per thread is in flight, and each is merged into the total as soon as the blocks before
+ * it are, so the memory used does not depend on the number of replicas.
+ */
+class EnsembleRunner {
+
+    private static final int BLOCK_SIZE = 64;
+
+    private final Scenario scenario;
+    private final StochasticRules rules;
+    private final long seed;
+    private final int threads;
+
+    /**
+     * Creates a runner using one thread per available processor.
+     *
+     * @param scenario the scenario every replica starts from.
+     * @param rules    the sources of randomness.
+     * @param seed     the seed of the ensemble.
+     */
+    public EnsembleRunner(Scenario scenario, StochasticRules rules, long seed) {
+        this(scenario, rules, seed, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a runner.
+     *
+     * @param scenario the scenario every replica starts from.
+     * @param rules    the sources of randomness.
+     * @param seed     the seed of the ensemble.
+     * @param threads  the number of replicas simulated at the same time.
+     */
+    public EnsembleRunner(Scenario scenario, StochasticRules rules, long seed, int threads) {
+        this.scenario = scenario;
+        this.rules = rules;
+        this.seed = seed;
+        this.threads = Math.max(threads, 1);
+    }
+
+    /**
+     * Runs the replicas. A failing replica fails the whole ensemble with its own exception, as
+     * if it had run on the calling thread.
+     *
+     * @param replicas the number of replicas.
+     * @return the aggregated statistics.
+     * @throws InterruptedException      if interrupted while waiting for the replicas.
+     * @throws GrassOutOfBoundsException if the grass amount of the scenario is out of bounds.
+     */
+    public EnsembleStatistics run(int replicas) throws InterruptedException, GrassOutOfBoundsException {
+        int blocks = (replicas + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int window = Math.min(threads, Math.max(blocks, 1));
+        ExecutorService executor = Executors.newFixedThreadPool(window);
+        try {
+            ArrayDeque<Future<EnsembleStatistics>> inFlight = new ArrayDeque<>(window);
+            int submitted = 0;
+            for (; submitted < window && submitted < blocks; submitted++) {
+                inFlight.add(submitBlock(executor, submitted, replicas));
+            }
+            EnsembleStatistics total = newStatistics();
+            while (!inFlight.isEmpty()) {
+                total.merge(join(inFlight.poll())); // In order, dropping the block once merged
+                if (submitted < blocks) {
+                    inFlight.add(submitBlock(executor, submitted++, replicas));
+                }
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts a block of replicas.
+     *
+     * @param executor the executor running the block.
+     * @param block    the block number.
+     * @param replicas the number of replicas of the ensemble.
+     * @return the statistics of the block, once it is done.
+     */
+    private Future<EnsembleStatistics> submitBlock(ExecutorService executor, int block, int replicas) {
+        int from = block * BLOCK_SIZE;
+        int to = Math.min(from + BLOCK_SIZE, replicas);
+        return executor.submit(() -> runBlock(from, to));
+    }
+
+    /**
+     * Waits for a block of replicas and rethrows its failure unwrapped.
+     *
+     * @param future the block.
+     * @return the statistics of the block.
+     * @throws InterruptedException      if interrupted while waiting for the block.
+     * @throws GrassOutOfBoundsException if the grass amount of the scenario is out of bounds.
+     */
+    private static EnsembleStatistics join(Future<EnsembleStatistics> future)
+            throws InterruptedException, GrassOutOfBoundsException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof GrassOutOfBoundsException) {
+                throw (GrassOutOfBoundsException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause; // runBlock throws nothing else
+        }
+    }
+
+    /**
+     * @return empty statistics for the scenario.
+     */
+    private EnsembleStatistics newStatistics() {
+        return new EnsembleStatistics(scenario.getDays(), scenario.getPopulation().getRegistry().size());
+    }
+
+    /**
+     * Runs a block of replicas one after the other.
+     *
+     * @param from the first replica.
+     * @param to   the end of the block, exclusive.
+     * @return the statistics of the block.
+     * @throws GrassOutOfBoundsException if the grass amount of the scenario is out of bounds.
+     */
+    private EnsembleStatistics runBlock(int from, int to) throws GrassOutOfBoundsException {
+        EnsembleStatistics statistics = newStatistics();
+        for (int replica = from; replica < to; replica++) {
+            PopulationStore population = scenario.getPopulation().copy();
+            population.removeDead();
+            StochasticEngine engine = new StochasticEngine(population, new Field(scenario.getGrassAmount()), rules,
+                new SplittableRandom(mix(seed + replica)));
+            int day = 1;
+            for (; day <= scenario.getDays() && !population.isEmpty(); day++) {
+                engine.simulateDay();
+                statistics.recordDay(day, population);
+            }
+            if (day <= scenario.getDays()) {
+                statistics.recordExtinction(day);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Scrambles a seed with the SplitMix64 finalizer, so consecutive replica seeds give
+     * unrelated streams.
+     *
+     * @param value the value.
+     * @return the scrambled value.
+     */
+    private static long mix(long value) {
+        long z = value * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Runs an ensemble of the input file and prints its statistics as tab-separated lines: the
+     * mean number of living animals and their mean energy per day and species, with the
+     * half-widths of their 95% confidence intervals, then the distribution of survivors.
+     *
+     * @param scenario the scenario.
+     * @param replicas the number of replicas.
+     * @param rules    the sources of randomness.
+     * @param seed     the seed of the ensemble.
+     * @param output   the sink receiving the statistics.
+     * @throws Exception if a replica fails.
+     */
+    public static void main(Scenario scenario, int replicas, StochasticRules rules, long seed, OutputSink output)
+            throws Exception {
+        EnsembleStatistics statistics = new EnsembleRunner(scenario, rules, seed).run(replicas);
+        SpeciesRegistry registry = scenario.getPopulation().getRegistry();
+
+        output.println("day\tspecies\talive\talive ci95\tenergy\tenergy ci95");
+        for (int day = 1; day <= scenario.getDays(); day++) {
+            for (int s = 0; s < registry.size(); s++) {
+                RunningStatistics alive = statistics.getAlive(day, s);
+                RunningStatistics energy = statistics.getEnergy(day, s);
+                output.println(String.format(Locale.ROOT, "%d\t%s\t%.4f\t%.4f\t%.4f\t%.4f", day,
+                    registry.get((byte) s).getName(), alive.getMean(), alive.getConfidenceHalfWidth(),
+                    energy.getMean(), energy.getConfidenceHalfWidth()));
+            }
+        }
+        output.println("species\tsurvivors\treplicas");
+        for (int s = 0; s < registry.size(); s++) {
+            long[] survivors = statistics.getSurvivors(s);
+            for (int count = 0; count < survivors.length; count++) {
+                if (survivors[count] > 0) {
+                    output.println(registry.get((byte) s).getName() + "\t" + count + "\t" + survivors[count]);
+                }
+            }
+        }
+    }
+}
+
+/**
+ * A simulation input: the number of days, the initial grass and the population.
+ * Every scenario is independent of the others, so many of them can be simulated at once.
+ */
+class Scenario {
+
+    // A parser holds a 64 KiB direct buffer, so every thread keeps the last one it used
+    private static final ThreadLocal<ScenarioParser> PARSERS = new ThreadLocal<>();
+
+    private final int days;
+    private final float grassAmount;
+    private final PopulationStore population;
+
+    /**
+     * Creates a scenario from already validated values.
+     *
+     * @param days        the number of simulation days.
+     * @param grassAmount the initial amount of grass.
+     * @param population  the animals.
+     */
+    public Scenario(int days, float grassAmount, PopulationStore population) {
+        this.days = days;
+        this.grassAmount = grassAmount;
+        this.population = population;
+    }
+
+    /**
+     * Reads and validates a scenario in the input file format.
+     *
+     * @param path the input file.
+     * @return the scenario.
+     * @throws Exception for invalid inputs or data errors.
+     */
+    public static Scenario read(Path path) throws Exception {
+        return read(path, SpeciesRegistry.DEFAULT, SimulationLimits.STANDARD);
+    }
+
+    /**
+     * Reads and validates a scenario whose animals may be of configured species.
+     *
+     * @param path     the input file.
+     * @param registry the species that may appear in the file.
+     * @return the scenario.
+     * @throws Exception for invalid inputs or data errors.
+     */
+    public static Scenario read(Path path, SpeciesRegistry registry) throws Exception {
+        return read(path, registry, SimulationLimits.STANDARD);
+    }
+
+    /**
+     * Reads and validates a scenario whose animals may be of configured species, within limits.
+     *
+     * @param path     the input file.
+     * @param registry the species that may appear in the file.
+     * @param limits   the largest numbers of days and animals allowed.
+     * @return the scenario.
+     * @throws Exception for invalid inputs or data errors.
+     */
+    public static Scenario read(Path path, SpeciesRegistry registry, SimulationLimits limits) throws Exception {
+        ScenarioParser parser = PARSERS.get();
+        if (parser == null || !parser.accepts(registry, limits)) {
+            parser = new ScenarioParser(registry, limits);
+            PARSERS.set(parser);
+        }
+        return parser.parse(path);
+    }
+
+    /**
+     * @return the number of simulation days.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @return the initial amount of grass.
+     */
+    public float getGrassAmount() {
+        return grassAmount;
+    }
+
+    /**
+     * @return the animals.
+     */
+    public PopulationStore getPopulation() {
+        return population;
+    }
+}
+
+/**
+ * Parses scenarios in the input file format straight from the bytes of a channel.
+ *
+ * <p>Lines are read into a reusable byte array and numbers are decoded in place, so a parse
+ * allocates almost nothing per animal. Plain decimal numbers are decoded directly; anything
+ * else (exponents, suffixes, stray 'F's, non-ASCII characters) is handed to the same
+ * {@code String}-based parsing the file format always used, so every file is accepted or
+ * rejected exactly as before. Lines may end with "\n", "\r\n" or "\r".
+ */
+class ScenarioParser {
+
+    private static final float MIN_AMOUNT_GRASS = Constants.MIN_AMOUNT_GRASS.getValue();
+    private static final float MAX_AMOUNT_GRASS = Constants.MAX_AMOUNT_GRASS.getValue();
+    private static final float MIN_WEIGHT = Constants.MIN_WEIGHT.getValue();
+    private static final float MAX_WEIGHT = Constants.MAX_WEIGHT.getValue();
+    private static final float MIN_SPEED = Constants.MIN_SPEED.getValue();
+    private static final float MAX_SPEED = Constants.MAX_SPEED.getValue();
+    private static final float MAX_ENERGY = Constants.MAX_ENERGY.getValue();
+    private static final float MIN_ENERGY = Constants.MIN_ENERGY.getValue();
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int FIELDS = 4;
+    private static final int MAX_FAST_INT_DIGITS = 9;
+    private static final int MAX_EXACT_MANTISSA = 1 << 24;
+    private static final float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+    private final SpeciesRegistry registry;
+    private final SimulationLimits limits;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    private ReadableByteChannel channel;
+    private byte[] line = new byte[128];
+    private int lineStart;
+    private int lineEnd;
+
+    /**
+     * Creates a parser accepting the built-in species.
+     */
+    public ScenarioParser() {
+        this(SpeciesRegistry.DEFAULT);
+    }
+
+    /**
+     * Creates a parser accepting the species of a registry.
+     *
+     * @param registry the species that may appear in the input.
+     */
+    public ScenarioParser(SpeciesRegistry registry) {
+        this(registry, SimulationLimits.STANDARD);
+    }
+
+    /**
+     * Creates a parser accepting the species of a registry, in scenarios within some limits.
+     *
+     * @param registry the species that may appear in the input.
+     * @param limits   the largest numbers of days and animals allowed.
+     */
+    public ScenarioParser(SpeciesRegistry registry, SimulationLimits limits) {
+        this.registry = registry;
+        this.limits = limits;
+    }
+
+    /**
+     * @param registry the species that may appear in the input.
+     * @param limits   the largest numbers of days and animals allowed.
+     * @return whether this parser reads scenarios of these species within these limits.
+     */
+    public boolean accepts(SpeciesRegistry registry, SimulationLimits limits) {
+        return this.registry == registry && this.limits == limits;
+    }
+
+    /**
+     * Reads and validates a scenario file.
+     *
+     * @param path the input file.
+     * @return the scenario.
+     * @throws Exception for invalid inputs or data errors.
+     */
+    public Scenario parse(Path path) throws Exception {
+        // Check if the file is empty
+        if (Files.size(path) == 0) {
+            throw new InvalidInputsException();
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            return parse(file);
+        }
+    }
+
+    /**
+     * Reads and validates a scenario from a channel, up to its end. Nothing is left over from a
+     * previous parse, even one that failed, so a parser can be reused for any number of inputs.
+     *
+     * @param source the channel.
+     * @return the scenario.
+     * @throws Exception for invalid inputs or data errors.
+     */
+    public Scenario parse(ReadableByteChannel source) throws Exception {
+        channel = source;
+        buffer.clear().flip();
+        lineStart = 0;
+        lineEnd = 0;
+        try {
+            return parse();
+        } finally {
+            channel = null;
+        }
+    }
+
+    /**
+     * Parses the scenario from the current channel.
+     *
+     * @return the scenario.
+     * @throws Exception for invalid inputs or data errors.
+     */
+    private Scenario parse() throws Exception {
+        int days = parseInt(nextTrimmedLine()); // Read first line
+        if (!limits.allowsDays(days)) {
+            throw new InvalidInputsException();
+        }
+
+        float grassAmount = parseFloat(nextLine(), lineStart, lineEnd); // Read second line
+        if (grassAmount < 0) {
+            throw new InvalidInputsException();
+        }
+        if (grassAmount < MIN_AMOUNT_GRASS || grassAmount > MAX_AMOUNT_GRASS) {
+            throw new GrassOutOfBoundsException();
+        }
+
+        int noAnimals = parseInt(nextTrimmedLine()); // Read third line
+        if (!limits.allowsAnimals(noAnimals)) {
+            throw new InvalidInputsException();
+        }
+
+        PopulationStore population = new PopulationStore(noAnimals, registry);
+        for (int i = 0; i < noAnimals; i++) {
+            nextTrimmedLine();
+            if (lineStart == lineEnd) {
+                throw new InvalidNumberOfAnimalParametersException();
+            }
+            if (splitFields() != FIELDS) {
+                throw new InvalidNumberOfAnimalParametersException();
+            }
+
+            int type = registry.find(line, fieldStart[0], fieldEnd[0]);
+            // Check if the animal type is valid
+            if (type < 0) {
+                throw new InvalidInputsException();
+            }
+
+            float weight = parseFloat(line, fieldStart[1], fieldEnd[1]);
+            float speed = parseFloat(line, fieldStart[2], fieldEnd[2]);
+            float energy = parseFloat(line, fieldStart[FIELDS - 1], fieldEnd[FIELDS - 1]);
+
+            if (weight < MIN_WEIGHT || weight > MAX_WEIGHT) { // validate weight
+                throw new WeightOutOfBoundsException();
+            }
+
+            if (speed < MIN_SPEED || speed > MAX_SPEED) { // validate speed
+                throw new SpeedOutOfBoundsException();
+            }
+
+            if (energy < MIN_ENERGY || energy > MAX_ENERGY) {
+                throw new EnergyOutOfBoundsException();
+            }
+            population.add((byte) type, weight, speed, energy);
+        }
+        // any extra line will throw an exception
+        if (buffer.hasRemaining() || fill()) {
+            throw new InvalidInputsException();
+        }
+        return new Scenario(days, grassAmount, population);
+    }
+
+    /**
+     * Reads the next line into {@link #line}, without its terminator.
+     *
+     * @return the line buffer.
+     * @throws IOException if the channel cannot be read.
+     * @throws InvalidInputsException if there is no line left.
+     */
+    private byte[] nextLine() throws IOException, InvalidInputsException {
+        int length = 0;
+        boolean any = false;
+        while (buffer.hasRemaining() || fill()) {
+            byte b = buffer.get();
+            any = true;
+            if (b == '\n') {
+                break;
+            }
+            if (b == '\r') {
+                if ((buffer.hasRemaining() || fill()) && buffer.get(buffer.position()) == '\n') {
+                    buffer.get();
+                }
+                break;
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = b;
+        }
+        if (!any) {
+            throw new InvalidInputsException();
+        }
+        lineStart = 0;
+        lineEnd = length;
+        return line;
+    }
+
+    /**
+     * Reads the next line and trims it like {@link String#trim()}.
+     *
+     * @return the line buffer.
+     * @throws IOException if the channel cannot be read.
+     * @throws InvalidInputsException if there is no line left.
+     */
+    private byte[] nextTrimmedLine() throws IOException, InvalidInputsException {
+        nextLine();
+        while (lineStart < lineEnd && (line[lineStart] & 0xFF) <= ' ') {
+            lineStart++;
+        }
+        while (lineEnd > lineStart && (line[lineEnd - 1] & 0xFF) <= ' ') {
+            lineEnd--;
+        }
+        return line;
+    }
+
+    /**
+     * Refills the buffer from the channel.
+     *
+     * @return whether any bytes are available.
+     * @throws IOException if the channel cannot be read.
+     */
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read = 0;
+        while (read == 0) {
+            read = channel.read(buffer);
+        }
+        buffer.flip();
+        return read > 0;
+    }
+
+    /**
+     * Splits the trimmed line at runs of whitespace, like {@code split("\\s+")}.
+     *
+     * @return the number of fields, or {@code FIELDS + 1} if there are more than {@code FIELDS}.
+     */
+    private int splitFields() {
+        int count = 0;
+        int i = lineStart;
+        while (i < lineEnd) {
+            if (count == FIELDS) {
+                return FIELDS + 1;
+            }
+            fieldStart[count] = i;
+            while (i < lineEnd && !isWhitespace(line[i])) {
+                i++;
+            }
+            fieldEnd[count++] = i;
+            while (i < lineEnd && isWhitespace(line[i])) {
+                i++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param b a byte of the line.
+     * @return whether the byte is matched by the regular expression {@code \s}.
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    /**
+     * Parses the trimmed line as {@link Integer#parseInt(String)} does.
+     *
+     * @param bytes the line buffer.
+     * @return the value.
+     */
+    private int parseInt(byte[] bytes) {
+        int i = lineStart;
+        boolean negative = false;
+        if (i < lineEnd && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i++] == '-';
+        }
+        int digits = lineEnd - i;
+        if (digits == 0 || digits > MAX_FAST_INT_DIGITS) {
+            return Integer.parseInt(decode(bytes, lineStart, lineEnd));
+        }
+        int value = 0;
+        for (; i < lineEnd; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(decode(bytes, lineStart, lineEnd));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses bytes as {@code Float.parseFloat(text.replace("F", "").trim())} does.
+     * A plain decimal whose digits fit in a float mantissa, with at most ten fraction digits,
+     * is one exact division away from its correctly rounded value, so it is decoded in place.
+     *
+     * @param bytes the buffer.
+     * @param from  the first byte.
+     * @param to    the byte after the last one.
+     * @return the value.
+     * @throws InvalidInputsException if the bytes are not a number.
+     */
+    private static float parseFloat(byte[] bytes, int from, int to) throws InvalidInputsException {
+        int start = from;
+        int end = to;
+        while (start < end && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i++] == '-';
+        }
+        int mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            byte b = bytes[i];
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                return parseFloatSlowly(bytes, from, to);
+            }
+            mantissa = mantissa * 10 + digit;
+            digits++;
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+            if (mantissa >= MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+                return parseFloatSlowly(bytes, from, to);
+            }
+        }
+        if (digits == 0) {
+            return parseFloatSlowly(bytes, from, to);
+        }
+        float value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses bytes with the {@code String}-based rule of the input format.
+     *
+     * @param bytes the buffer.
+     * @param from  the first byte.
+     * @param to    the byte after the last one.
+     * @return the value.
+     * @throws InvalidInputsException if the bytes are not a number.
+     */
+    private static float parseFloatSlowly(byte[] bytes, int from, int to) throws InvalidInputsException {
+        try {
+            return Float.parseFloat(decode(bytes, from, to).replace("F", "").trim());
+        } catch (NumberFormatException e) {
+            throw new InvalidInputsException();
+        }
+    }
+
+    /**
+     * @param bytes the buffer.
+     * @param from  the first byte.
+     * @param to    the byte after the last one.
+     * @return the bytes decoded with the platform charset, as the input file always was.
+     */
+    private static String decode(byte[] bytes, int from, int to) {
+        return new String(bytes, from, to - from, Charset.defaultCharset());
+    }
+}
+
+/**
+ * Result of simulating one scenario of a batch.
+ */
+class ScenarioResult {
+
+    private final Path path;
+    private final List<String> sounds;
+    private final HuntMetrics huntMetrics;
+    private final String error;
+
+    /**
+     * Creates a result.
+     *
+     * @param path        the scenario file.
+     * @param sounds      the sounds of the surviving animals, or null if the scenario failed.
+     * @param huntMetrics the outcome counts of every hunt, or null if the scenario failed.
+     * @param error       the error message, or null if the scenario succeeded.
+     */
+    private ScenarioResult(Path path, List<String> sounds, HuntMetrics huntMetrics, String error) {
+        this.path = path;
+        this.sounds = sounds;
+        this.huntMetrics = huntMetrics;
+        this.error = error;
+    }
+
+    /**
+     * Creates the result of a scenario that was simulated.
+     *
+     * @param path        the scenario file.
+     * @param sounds      the sounds of the surviving animals.
+     * @param huntMetrics the outcome counts of every hunt.
+     * @return the result.
+     */
+    public static ScenarioResult success(Path path, List<String> sounds, HuntMetrics huntMetrics) {
+        return new ScenarioResult(path, sounds, huntMetrics, null);
+    }
+
+    /**
+     * Creates the result of a scenario that could not be simulated.
+     *
+     * @param path  the scenario file.
+     * @param error the error message.
+     * @return the result.
+     */
+    public static ScenarioResult failure(Path path, String error) {
+        return new ScenarioResult(path, null, null, error);
+    }
+
+    /**
+     * @return the scenario file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return whether the scenario was simulated.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the sounds of the surviving animals, or null if the scenario failed.
+     */
+    public List<String> getSounds() {
+        return sounds;
+    }
+
+    /**
+     * @return the outcome counts of every hunt, or null if the scenario failed.
+     */
+    public HuntMetrics getHuntMetrics() {
+        return huntMetrics;
+    }
+
+    /**
+     * @return the error message, or null if the scenario succeeded.
+     */
+    public String getError() {
+        return error;
+    }
+}
+
+/**
+ * Receives the progress of a {@link Simulation}, on the thread running it.
+ */
+interface SimulationListener {
+
+    /**
+     * Called after every simulated day.
+     *
+     * @param simulation the simulation, whose day counter is the day that just ended.
+     */
+    void dayEnded(Simulation simulation);
+}
+
+/**
+ * A self-contained simulation on the columnar engine: its own field, population and day
+ * counter, and no static state, so any number of them can run at once on different threads.
+ * Invalid inputs are reported as exceptions by {@link Builder#build}, never by exiting.
+ *
+ * <pre>{@code
+ * Simulation simulation = Simulation.builder().input(Paths.get("input.txt")).build();
+ * while (simulation.step()) {
+ *     ...
+ * }
+ * }</pre>
+ */
+class Simulation {
+
+    private SimulationListener listener;
+    private Consumer<HuntOutcome> rejectionListener;
+    private HuntingMode huntingMode = HuntingMode.NEIGHBOUR;
+    private BreedingRules breeding;
+    private final ForkJoinPool pool;
+    private int days;
+    private Field field;
+    private PopulationStore population;
+    private PopulationEngine engine;
+    private Runnable simulateDay;
+    private int day;
+
+    /**
+     * Creates a simulation of a population, taking ownership of it.
+     *
+     * @param days       the number of days to simulate.
+     * @param field      the field.
+     * @param population the animals.
+     * @param listener   the listener, or null.
+     */
+    Simulation(int days, Field field, PopulationStore population, SimulationListener listener) {
+        this(days, field, population, listener, null);
+    }
+
+    /**
+     * Creates a simulation of a population, taking ownership of it.
+     *
+     * @param days       the number of days to simulate.
+     * @param field      the field.
+     * @param population the animals.
+     * @param listener   the listener, or null.
+     * @param pool       the pool simulating large days in parallel, or null to use one thread.
+     */
+    Simulation(int days, Field field, PopulationStore population, SimulationListener listener, ForkJoinPool pool) {
+        this.listener = listener;
+        this.pool = pool;
+        start(days, field, population);
+    }
+
+    /**
+     * @return a builder of a simulation.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts over with another population, taking ownership of it.
+     */
+    private void start(int days, Field field, PopulationStore population) {
+        population.removeDead();
+        this.days = days;
+        this.field = field;
+        this.population = population;
+        if (pool == null) {
+            this.engine = new PopulationEngine(population, field);
+            this.simulateDay = engine::simulateDay;
+        } else {
+            ParallelPopulationEngine parallel = new ParallelPopulationEngine(population, field, pool);
+            this.engine = parallel.getSequential();
+            this.simulateDay = parallel::simulateDay;
+        }
+        this.engine.setRejectionListener(rejectionListener);
+        this.engine.setHuntingMode(huntingMode);
+        this.engine.setBreedingRules(breeding);
+        this.day = 0;
+    }
+
+    /**
+     * Starts over with a copy of a scenario, reusing the columns of the current population if
+     * they are large enough and of the same species. The scenario itself is not changed, so it
+     * can be simulated again.
+     *
+     * @param scenario the scenario.
+     * @throws GrassOutOfBoundsException if the grass amount of the scenario is out of bounds.
+     */
+    public void reset(Scenario scenario) throws GrassOutOfBoundsException {
+        PopulationStore source = scenario.getPopulation();
+        PopulationStore target = population;
+        if (target.getRegistry() == source.getRegistry()) {
+            target.copyFrom(source);
+        } else {
+            target = source.copy();
+        }
+        start(scenario.getDays(), new Field(scenario.getGrassAmount()), target);
+    }
+
+    /**
+     * Simulates the next day, unless every day was simulated or every animal died.
+     *
+     * @return whether a day was simulated.
+     */
+    public boolean step() {
+        if (isFinished()) {
+            return false;
+        }
+        simulateDay.run();
+        day++;
+        if (listener != null) {
+            listener.dayEnded(this);
+        }
+        return true;
+    }
+
+    /**
+     * Simulates the next days, stopping early if every day was simulated or every animal died.
+     * Without a listener, quiescent days are skipped at once as {@link PopulationEngine} does.
+     *
+     * @param days the largest number of days to simulate.
+     * @return the number of days simulated.
+     */
+    public int run(int days) {
+        int target = (int) Math.min((long) day + Math.max(days, 0), this.days);
+        if (listener == null) {
+            int start = engine.getDay();
+            engine.runSimulation(target - day, simulateDay);
+            day += engine.getDay() - start;
+            return engine.getDay() - start;
+        }
+        int simulated = 0;
+        while (day < target && step()) {
+            simulated++;
+        }
+        return simulated;
+    }
+
+    /**
+     * Simulates every remaining day.
+     *
+     * @return the number of days simulated.
+     */
+    public int run() {
+        return run(days - day);
+    }
+
+    /**
+     * @return whether every day was simulated or every animal died.
+     */
+    public boolean isFinished() {
+        return day >= days || population.isEmpty();
+    }
+
+    /**
+     * @param listener the listener called after every day, or null.
+     */
+    public void setListener(SimulationListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Reports every rejected hunt as it happens, in turn order. Quiescent days are simulated
+     * rather than skipped meanwhile.
+     *
+     * @param rejectionListener receives the outcome of every rejected hunt, or null.
+     */
+    public void setRejectionListener(Consumer<HuntOutcome> rejectionListener) {
+        this.rejectionListener = rejectionListener;
+        engine.setRejectionListener(rejectionListener);
+    }
+
+    /**
+     * @param huntingMode how hunters choose their prey from now on.
+     */
+    public void setHuntingMode(HuntingMode huntingMode) {
+        this.huntingMode = huntingMode;
+        engine.setHuntingMode(huntingMode);
+    }
+
+    /**
+     * @return how hunters choose their prey.
+     */
+    public HuntingMode getHuntingMode() {
+        return huntingMode;
+    }
+
+    /**
+     * Lets animals breed from now on. The random variations start over from the seed of the rules.
+     *
+     * @param breeding the breeding rules, or null if animals do not breed.
+     */
+    public void setBreedingRules(BreedingRules breeding) {
+        this.breeding = breeding;
+        engine.setBreedingRules(breeding);
+    }
+
+    /**
+     * @return the breeding rules, or null if animals do not breed.
+     */
+    public BreedingRules getBreedingRules() {
+        return breeding;
+    }
+
+    /**
+     * @return the number of days to simulate.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @return the last simulated day, or 0 before the first one.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * @return the field.
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return the animals, alive and tombstoned.
+     */
+    public PopulationStore getPopulation() {
+        return population;
+    }
+
+    /**
+     * @return the outcome counts of every hunt since the simulation started.
+     */
+    public HuntMetrics getHuntMetrics() {
+        return engine.getHuntMetrics();
+    }
+
+    /**
+     * @return the sounds of the living animals, in queue order.
+     */
+    public List<String> getSounds() {
+        List<String> sounds = new ArrayList<>(population.size());
+        for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+            sounds.add(population.getType(i).getSound());
+        }
+        return sounds;
+    }
+
+    /**
+     * Builds a {@link Simulation} from an input file, a {@link Scenario}, or a field and a
+     * population given separately.
+     */
+    static class Builder {
+
+        private Path input;
+        private Scenario scenario;
+        private SpeciesRegistry species = SpeciesRegistry.DEFAULT;
+        private SimulationLimits limits = SimulationLimits.STANDARD;
+        private Integer days;
+        private Field field;
+        private PopulationStore population;
+        private SimulationListener listener;
+        private Consumer<HuntOutcome> rejectionListener;
+        private HuntingMode huntingMode = HuntingMode.NEIGHBOUR;
+        private BreedingRules breeding;
+        private ForkJoinPool pool;
+
+        /**
+         * @param input an input file to read the scenario from.
+         * @return this builder.
+         */
+        public Builder input(Path input) {
+            this.input = input;
+            return this;
+        }
+
+        /**
+         * @param scenario a scenario to simulate, whose population is simulated in place.
+         * @return this builder.
+         */
+        public Builder scenario(Scenario scenario) {
+            this.scenario = scenario;
+            return this;
+        }
+
+        /**
+         * @param species the species the input file may contain.
+         * @return this builder.
+         */
+        public Builder species(SpeciesRegistry species) {
+            this.species = species;
+            return this;
+        }
+
+        /**
+         * @param limits the largest numbers of days and animals of the input file.
+         * @return this builder.
+         */
+        public Builder limits(SimulationLimits limits) {
+            this.limits = limits;
+            return this;
+        }
+
+        /**
+         * @param days the number of days, overriding the one of the input.
+         * @return this builder.
+         */
+        public Builder days(int days) {
+            this.days = days;
+            return this;
+        }
+
+        /**
+         * @param field the field, replacing the grass amount of the input.
+         * @return this builder.
+         */
+        public Builder field(Field field) {
+            this.field = field;
+            return this;
+        }
+
+        /**
+         * @param population the animals, replacing those of the input; simulated in place.
+         * @return this builder.
+         */
+        public Builder population(PopulationStore population) {
+            this.population = population;
+            return this;
+        }
+
+        /**
+         * @param listener the listener called after every day.
+         * @return this builder.
+         */
+        public Builder listener(SimulationListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /**
+         * @param rejectionListener receives the outcome of every rejected hunt as it happens.
+         * @return this builder.
+         */
+        public Builder rejectionListener(Consumer<HuntOutcome> rejectionListener) {
+            this.rejectionListener = rejectionListener;
+            return this;
+        }
+
+        /**
+         * @param huntingMode how hunters choose their prey.
+         * @return this builder.
+         */
+        public Builder huntingMode(HuntingMode huntingMode) {
+            this.huntingMode = huntingMode;
+            return this;
+        }
+
+        /**
+         * @param breeding the breeding rules, or null if animals do not breed.
+         * @return this builder.
+         */
+        public Builder breeding(BreedingRules breeding) {
+            this.breeding = breeding;
+            return this;
+        }
+
+        /**
+         * @param pool the pool simulating the days of large populations in parallel, as
+         *             {@link ParallelPopulationEngine} does, for the whole life of the simulation.
+         * @return this builder.
+         */
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Reads the input file if there is one, and creates the simulation.
+         *
+         * @return the simulation.
+         * @throws Exception for invalid inputs or data errors, or if neither an input nor a
+         *                   field, population and number of days were given.
+         */
+        public Simulation build() throws Exception {
+            Scenario source = scenario;
+            if (source == null && input != null) {
+                source = Scenario.read(input, species, limits);
+            }
+            if (source == null && (days == null || field == null || population == null)) {
+                throw new IllegalStateException("A simulation needs an input, or days, a field and a population");
+            }
+            Simulation simulation = new Simulation(
+                    days != null ? days : source.getDays(),
+                    field != null ? field : new Field(source.getGrassAmount()),
+                    population != null ? population : source.getPopulation(),
+                    listener, pool);
+            simulation.setRejectionListener(rejectionListener);
+            simulation.setHuntingMode(huntingMode);
+            simulation.setBreedingRules(breeding);
+            return simulation;
+        }
+    }
+}
+
+/**
+ * Keeps finished {@link Simulation}s so their population columns can be reused by the next
+ * scenario instead of being allocated again. Any thread may acquire and release simulations.
+ */
+class SimulationPool {
+
+    private final BlockingQueue<Simulation> idle;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity the largest number of idle simulations kept.
+     */
+    public SimulationPool(int capacity) {
+        this.idle = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+    }
+
+    /**
+     * Takes an idle simulation, or creates one, and starts it over with a copy of a scenario.
+     *
+     * @param scenario the scenario, which is not changed.
+     * @return the simulation, without a listener.
+     * @throws GrassOutOfBoundsException if the grass amount of the scenario is out of bounds.
+     */
+    public Simulation acquire(Scenario scenario) throws GrassOutOfBoundsException {
+        Simulation simulation = idle.poll();
+        if (simulation == null) {
+            return new Simulation(scenario.getDays(), new Field(scenario.getGrassAmount()),
+                    scenario.getPopulation().copy(), null);
+        }
+        simulation.reset(scenario);
+        return simulation;
+    }
+
+    /**
+     * Returns a simulation that is no longer used. It is dropped if the pool is full.
+     *
+     * @param simulation the simulation.
+     */
+    public void release(Simulation simulation) {
+        simulation.setListener(null);
+        simulation.setRejectionListener(null);
+        simulation.setHuntingMode(HuntingMode.NEIGHBOUR);
+        simulation.setBreedingRules(null);
+        idle.offer(simulation);
+    }
+}
+
+/**
+ * Simulates many scenario files in one process on a bounded thread pool.
+ * A failing scenario is reported in its result and does not affect the others.
+ */
+class BatchRunner {
+
+    private final int threads;
+    private final SpeciesRegistry species;
+    private final SimulationLimits limits;
+
+    /**
+     * Creates a runner of built-in species using one thread per available processor.
+     */
+    public BatchRunner() {
+        this(Runtime.getRuntime().availableProcessors(), SpeciesRegistry.DEFAULT);
+    }
+
+    /**
+     * Creates a runner.
+     *
+     * @param threads the number of scenarios simulated at the same time.
+     * @param species the species the scenarios may contain.
+     */
+    public BatchRunner(int threads, SpeciesRegistry species) {
+        this(threads, species, SimulationLimits.STANDARD);
+    }
+
+    /**
+     * Creates a runner of scenarios within some limits.
+     *
+     * @param threads the number of scenarios simulated at the same time.
+     * @param species the species the scenarios may contain.
+     * @param limits  the largest numbers of days and animals of a scenario.
+     */
+    public BatchRunner(int threads, SpeciesRegistry species, SimulationLimits limits) {
+        this.threads = Math.max(threads, 1);
+        this.species = species;
+        this.limits = limits;
+    }
+
+    /**
+     * Runs every scenario listed by a directory or manifest and prints the results in order.
+     *
+     * @param source  the directory or manifest.
+     * @param species the species the scenarios may contain.
+     * @param limits  the largest numbers of days and animals of a scenario.
+     * @param output  the sink receiving the results.
+     * @throws IOException if the scenarios cannot be listed.
+     * @throws InterruptedException if interrupted while waiting for the scenarios.
+     */
+    public static void main(Path source, SpeciesRegistry species, SimulationLimits limits, OutputSink output)
+            throws IOException, InterruptedException {
+        BatchRunner runner = new BatchRunner(Runtime.getRuntime().availableProcessors(), species, limits);
+        for (ScenarioResult result : runner.run(listScenarios(source))) {
+            output.println("== " + result.getPath());
+            if (!result.isSuccess()) {
+                output.println(result.getError());
+                continue;
+            }
+            result.getSounds().forEach(output::println);
+            output.println(result.getHuntMetrics().toString());
+        }
+    }
+
+    /**
+     * Lists scenario files. A directory lists its regular files in name order; any other file is a
+     * manifest with one scenario path per line, relative to the manifest. Blank lines and lines
+     * starting with '#' in a manifest are ignored.
+     *
+     * @param source the directory or manifest.
+     * @return the scenario files.
+     * @throws IOException if the directory or manifest cannot be read.
+     */
+    public static List<Path> listScenarios(Path source) throws IOException {
+        List<Path> scenarios = new ArrayList<>();
+        if (Files.isDirectory(source)) {
+            try (Stream<Path> files = Files.list(source)) {
+                files.filter(Files::isRegularFile).sorted().forEach(scenarios::add);
+            }
+            return scenarios;
+        }
+        Path base = source.toAbsolutePath().getParent();
+        for (String line : Files.readAllLines(source)) {
+            String entry = line.trim();
+            if (!entry.isEmpty() && !entry.startsWith("#")) {
+                scenarios.add(base.resolve(entry));
+            }
+        }
+        return scenarios;
+    }
+
+    /**
+     * Simulates scenarios concurrently.
+     *
+     * @param scenarios the scenario files.
+     * @return one result per scenario, in the same order.
+     * @throws InterruptedException if interrupted while waiting for the scenarios.
+     */
+    public List<ScenarioResult> run(List<Path> scenarios) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(scenarios.size(), 1)));
+        try {
+            List<Future<ScenarioResult>> futures = new ArrayList<>(scenarios.size());
+            for (Path scenario : scenarios) {
+                futures.add(executor.submit(() -> simulate(scenario, species, limits)));
+            }
+            List<ScenarioResult> results = new ArrayList<>(scenarios.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(ScenarioResult.failure(scenarios.get(i), String.valueOf(e.getCause())));
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads and simulates one scenario.
+     *
+     * @param path    the scenario file.
+     * @param species the species the scenario may contain.
+     * @param limits  the largest numbers of days and animals of the scenario.
+     * @return the result.
+     */
+    public static ScenarioResult simulate(Path path, SpeciesRegistry species, SimulationLimits limits) {
+        Simulation simulation;
+        try {
+            simulation = Simulation.builder().input(path).species(species).limits(limits).build();
+        } catch (Exception e) {
+            return ScenarioResult.failure(path, ForestSimulator.describeError(e));
+        }
+        simulation.run();
+        return ScenarioResult.success(path, simulation.getSounds(), simulation.getHuntMetrics());
+    }
+}
+
+/**
+ * Versioned binary snapshot of a simulation: the day counter, the grass and every animal.
+ *
+ * <p>The file starts with a little-endian header (magic, version, number of days, last
+ * completed day, grass amount, number of animals), followed by the weight, speed and energy
+ * columns as floats and the species column as bytes. Files are written through a memory map
+ * and read back through one, so an opened snapshot reads animals straight from the mapped file.
+ */
+class Snapshot {
+
+    private static final int MAGIC = 0x50534E46; // "FNSP" in little-endian byte order
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    private final int days;
+    private final int day;
+    private final float grassAmount;
+    private final int size;
+    private final ByteBuffer species;
+    private final FloatBuffer weight;
+    private final FloatBuffer speed;
+    private final FloatBuffer energy;
+
+    /**
+     * Creates a view of a mapped snapshot.
+     *
+     * @param days        the number of simulation days.
+     * @param day         the last completed day.
+     * @param grassAmount the grass amount after that day.
+     * @param size        the number of animals.
+     * @param species     the species column.
+     * @param weight      the weight column.
+     * @param speed       the speed column.
+     * @param energy      the energy column.
+     */
+    private Snapshot(int days, int day, float grassAmount, int size, ByteBuffer species,
+                     FloatBuffer weight, FloatBuffer speed, FloatBuffer energy) {
+        this.days = days;
+        this.day = day;
+        this.grassAmount = grassAmount;
+        this.size = size;
+        this.species = species;
+        this.weight = weight;
+        this.speed = speed;
+        this.energy = energy;
+    }
+
+    /**
+     * Writes a snapshot. The file is written next to its destination and then moved over it,
+     * so an interrupted write never leaves a broken snapshot behind.
+     *
+     * @param path       the snapshot file.
+     * @param days       the number of simulation days.
+     * @param day        the last completed day.
+     * @param field      the field after that day.
+     * @param population the animals after that day.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path path, int days, int day, Field field, PopulationStore population)
+            throws IOException {
+        population.compact();
+        int size = population.size();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(days).putInt(day)
+                    .putFloat(field.getGrassAmount()).putInt(size);
+
+            MappedByteBuffer[] columns = mapColumns(channel, FileChannel.MapMode.READ_WRITE, size);
+            population.writeColumns(columns[3], columns[0].asFloatBuffer(),
+                    columns[1].asFloatBuffer(), columns[2].asFloatBuffer());
+            header.force();
+            for (MappedByteBuffer column : columns) {
+                column.force();
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Opens a snapshot without copying its animals.
+     *
+     * @param path the snapshot file.
+     * @return the snapshot.
+     * @throws IOException if the file cannot be read or is not a snapshot of this version.
+     */
+    public static Snapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a forest snapshot: " + path);
+            }
+            MappedByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a forest snapshot: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            }
+            int days = header.getInt();
+            int day = header.getInt();
+            float grassAmount = header.getFloat();
+            int size = header.getInt();
+            if (size < 0 || channel.size() != HEADER_SIZE + 13L * size) {
+                throw new IOException("Truncated forest snapshot: " + path);
+            }
+            MappedByteBuffer[] columns = mapColumns(channel, FileChannel.MapMode.READ_ONLY, size);
+            return new Snapshot(days, day, grassAmount, size, columns[3], columns[0].asFloatBuffer(),
+                    columns[1].asFloatBuffer(), columns[2].asFloatBuffer());
+        }
+    }
+
+    /**
+     * Maps the weight, speed, energy and species columns, in that order.
+     *
+     * @param channel the snapshot file.
+     * @param mode    the mapping mode.
+     * @param size    the number of animals.
+     * @return the mapped columns.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private static MappedByteBuffer[] mapColumns(FileChannel channel, FileChannel.MapMode mode, int size)
+            throws IOException {
+        long floatColumn = (long) Float.BYTES * size;
+        return new MappedByteBuffer[] {
+            map(channel, mode, HEADER_SIZE, floatColumn),
+            map(channel, mode, HEADER_SIZE + floatColumn, floatColumn),
+            map(channel, mode, HEADER_SIZE + 2 * floatColumn, floatColumn),
+            map(channel, mode, HEADER_SIZE + 3 * floatColumn, size),
+        };
+    }
+
+    /**
+     * Maps a region of the file in little-endian byte order.
+     *
+     * @param channel  the file.
+     * @param mode     the mapping mode.
+     * @param position the start of the region.
+     * @param length   the length of the region.
+     * @return the mapped region.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long length)
+            throws IOException {
+        MappedByteBuffer buffer = channel.map(mode, position, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * @return the number of simulation days.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @return the last completed day.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * @return the grass amount after the last completed day.
+     */
+    public float getGrassAmount() {
+        return grassAmount;
+    }
+
+    /**
+     * @return the number of animals.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index the position of the animal.
+     * @return the species of the animal.
+     */
+    public Species getSpecies(int index) {
+        return Species.fromCode(species.get(index));
+    }
+
+    /**
+     * @param index the position of the animal.
+     * @return the weight of the animal.
+     */
+    public float getWeight(int index) {
+        return weight.get(index);
+    }
+
+    /**
+     * @param index the position of the animal.
+     * @return the speed of the animal.
+     */
+    public float getSpeed(int index) {
+        return speed.get(index);
+    }
+
+    /**
+     * @param index the position of the animal.
+     * @return the energy of the animal.
+     */
+    public float getEnergy(int index) {
+        return energy.get(index);
+    }
+
+    /**
+     * @return a field with the saved grass amount.
+     * @throws GrassOutOfBoundsException if the saved grass amount is out of bounds.
+     */
+    public Field toField() throws GrassOutOfBoundsException {
+        return new Field(grassAmount);
+    }
+
+    /**
+     * Copies the saved animals into a new store.
+     *
+     * @return the population.
+     * @throws Exception if an animal has an unknown species or properties out of bounds.
+     */
+    public PopulationStore toPopulation() throws Exception {
+        return PopulationStore.fromColumns(size, species, weight, speed, energy);
+    }
+}
+
+/**
+ * Runs a simulation on the columnar engine, saving a {@link Snapshot} every few days.
+ * If the snapshot already exists, the run resumes after its last completed day.
+ */
+class CheckpointRunner {
+
+    private final Path snapshot;
+    private final int interval;
+    private final SimulationLimits limits;
+
+    /**
+     * Creates a runner.
+     *
+     * @param snapshot the snapshot file.
+     * @param interval the number of days between snapshots.
+     */
+    public CheckpointRunner(Path snapshot, int interval) {
+        this(snapshot, interval, SimulationLimits.STANDARD);
+    }
+
+    /**
+     * Creates a runner of an input file within some limits.
+     *
+     * @param snapshot the snapshot file.
+     * @param interval the number of days between snapshots.
+     * @param limits   the largest numbers of days and animals of the input file.
+     */
+    public CheckpointRunner(Path snapshot, int interval, SimulationLimits limits) {
+        this.snapshot = snapshot;
+        this.interval = Math.max(interval, 1);
+        this.limits = limits;
+    }
+
+    /**
+     * Runs the scenario of an input file, or resumes the run saved in the snapshot.
+     *
+     * @param input the input file, only read if there is no snapshot yet.
+     * @return the surviving animals.
+     * @throws Exception for invalid inputs, or if the snapshot cannot be read or written.
+     */
+    public PopulationStore run(Path input) throws Exception {
+        if (Files.exists(snapshot)) {
+            Snapshot saved = Snapshot.open(snapshot);
+            return run(saved.getDays(), saved.getDay(), saved.toField(), saved.toPopulation());
+        }
+        Scenario scenario = Scenario.read(input, SpeciesRegistry.DEFAULT, limits);
+        PopulationStore population = scenario.getPopulation();
+        population.removeDead();
+        return run(scenario.getDays(), 0, new Field(scenario.getGrassAmount()), population);
+    }
+
+    /**
+     * Simulates the days after the given one, saving a snapshot every {@code interval} days.
+     *
+     * @param days       the number of simulation days.
+     * @param day        the last completed day.
+     * @param field      the field.
+     * @param population the animals.
+     * @return the surviving animals.
+     * @throws IOException if a snapshot cannot be written.
+     */
+    private PopulationStore run(int days, int day, Field field, PopulationStore population) throws IOException {
+        PopulationEngine engine = new PopulationEngine(population, field);
+        for (int currentDay = day + 1; currentDay <= days; currentDay++) {
+            if (population.isEmpty()) {
+                break;
+            }
+            engine.simulateDay();
+            if (currentDay % interval == 0) {
+                Snapshot.write(snapshot, days, currentDay, field, population);
+            }
+        }
+        return population;
+    }
+}
+
+/**
+ * Append-only binary log of everything that happens in a simulation, for replay and diffing.
+ *
+ * <p>The file starts with a little-endian header (magic, version, number of days, grass amount,
+ * number of animals) and the starting animals (identifier, species code, weight, speed and
+ * energy), followed by one fixed-size record per event: its type, a code, an actor, a target
+ * and a value. Records are packed into a direct buffer and written to the channel whenever it
+ * fills up, so logging an event allocates nothing.
+ *
+ * <table>
+ *   <caption>Event records</caption>
+ *   <tr><th>Type</th><th>Code</th><th>Actor</th><th>Target</th><th>Value</th></tr>
+ *   <tr><td>GRAZE</td><td>1 if the grass was eaten</td><td>grazer</td><td>-1</td><td>energy needed</td></tr>
+ *   <tr><td>HUNT</td><td>{@link HuntOutcome} ordinal</td><td>hunter</td><td>prey</td><td>energy gained</td></tr>
+ *   <tr><td>DEATH</td><td>0</td><td>animal</td><td>-1</td><td>0</td></tr>
+ *   <tr><td>DAY_END</td><td>0</td><td>day</td><td>-1</td><td>grass amount after growth</td></tr>
+ * </table>
+ */
+class EventLog implements Closeable {
+
+    /**
+     * Types of events.
+     */
+    enum Type {
+        GRAZE, HUNT, DEATH, DAY_END
+    }
+
+    static final int MAGIC = 0x474C4E46; // "FNLG" in little-endian byte order
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 20;
+    static final int ANIMAL_SIZE = 17;
+    static final int RECORD_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Type[] TYPES = Type.values();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private IOException error;
+
+    /**
+     * Creates a log and writes its header.
+     *
+     * @param channel    the file, which is closed with the log.
+     * @param days       the number of simulation days.
+     * @param grass      the starting grass amount.
+     * @param population the starting animals.
+     * @throws IOException if the header cannot be written.
+     */
+    private EventLog(FileChannel channel, int days, float grass, PopulationStore population) throws IOException {
+        this.channel = channel;
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(days).putFloat(grass).putInt(population.size());
+        for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+            if (buffer.remaining() < ANIMAL_SIZE) {
+                flush();
+            }
+            buffer.putInt(population.getId(i)).put(population.getSpecies(i)).putFloat(population.getWeight(i))
+                    .putFloat(population.getSpeed(i)).putFloat(population.getEnergy(i));
+        }
+        flush();
+    }
+
+    /**
+     * Creates a log file, replacing any existing one. The animals of the population are given
+     * identifiers with {@link PopulationStore#trackIds}, which the events refer to.
+     *
+     * @param path       the log file.
+     * @param days       the number of simulation days.
+     * @param grass      the starting grass amount.
+     * @param population the starting animals.
+     * @return the log.
+     * @throws IOException if the file cannot be created.
+     */
+    public static EventLog create(Path path, int days, float grass, PopulationStore population) throws IOException {
+        population.trackIds();
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            return new EventLog(channel, days, grass, population);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param code the code stored in a record.
+     * @return the type of event it stands for, or null if the code is unknown.
+     */
+    static Type typeOf(byte code) {
+        return code >= 0 && code < TYPES.length ? TYPES[code] : null;
+    }
+
+    /**
+     * Logs a grazing attempt.
+     *
+     * @param grazer  the identifier of the grazer.
+     * @param success whether there was enough grass.
+     * @param amount  the energy the grazer needs, which it gained if there was enough grass.
+     */
+    public void graze(int grazer, boolean success, float amount) {
+        record(Type.GRAZE, success ? 1 : 0, grazer, -1, amount);
+    }
+
+    /**
+     * Logs a hunt, including rejected ones.
+     *
+     * @param hunter  the identifier of the hunter.
+     * @param prey    the identifier of its prey.
+     * @param outcome the outcome of the hunt.
+     * @param gained  the energy the hunter gained, zero unless the hunt succeeded.
+     */
+    public void hunt(int hunter, int prey, HuntOutcome outcome, float gained) {
+        record(Type.HUNT, outcome.ordinal(), hunter, prey, gained);
+    }
+
+    /**
+     * Logs an animal that dies at the end of the day.
+     *
+     * @param animal the identifier of the animal.
+     */
+    public void death(int animal) {
+        record(Type.DEATH, 0, animal, -1, 0);
+    }
+
+    /**
+     * Logs the end of a day, after the deaths of that day.
+     *
+     * @param day   the number of the day, starting from 1.
+     * @param grass the grass amount after it grew.
+     */
+    public void dayEnd(int day, float grass) {
+        record(Type.DAY_END, 0, day, -1, grass);
+    }
+
+    /**
+     * Appends a record to the buffer, writing the buffer out first if it is full.
+     */
+    private void record(Type type, int code, int actor, int target, float value) {
+        if (buffer.remaining() < RECORD_SIZE) {
+            try {
+                flush();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e; // Reported by close, so a full disk does not stop the simulation
+                }
+                buffer.clear();
+            }
+        }
+        buffer.put((byte) type.ordinal()).put((byte) code).putShort((short) 0)
+                .putInt(actor).putInt(target).putFloat(value);
+    }
+
+    /**
+     * Writes the buffered bytes to the file.
+     *
+     * @throws IOException if they cannot be written.
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the remaining events and closes the file.
+     *
+     * @throws IOException if an event or the file itself could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (error == null) {
+                flush();
+            }
+        } finally {
+            channel.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
+
+/**
+ * Reads an {@link EventLog} through memory maps, one event at a time.
+ *
+ * <p>The events are mapped in windows of a few megabytes, so logs larger than the address
+ * space of a single buffer can be read, and reading an event allocates nothing.
+ */
+class EventLogReader implements Closeable {
+
+    private static final long WINDOW_SIZE = (long) EventLog.RECORD_SIZE << 22;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int days;
+    private final float grassAmount;
+    private final int[] ids;
+    private final byte[] species;
+    private final float[] weight;
+    private final float[] speed;
+    private final float[] energy;
+    private final long eventsStart;
+    private final long end;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private long index = -1;
+    private EventLog.Type type;
+    private byte code;
+    private int actor;
+    private int target;
+    private float value;
+
+    /**
+     * Reads the header of an opened log.
+     *
+     * @param path    the log file, for error messages.
+     * @param channel the opened file.
+     * @throws IOException if the file cannot be read or is not an event log of this version.
+     */
+    private EventLogReader(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        long size = channel.size();
+        if (size < EventLog.HEADER_SIZE) {
+            throw new IOException("Not a forest event log: " + path);
+        }
+        MappedByteBuffer header = map(0, EventLog.HEADER_SIZE);
+        if (header.getInt() != EventLog.MAGIC) {
+            throw new IOException("Not a forest event log: " + path);
+        }
+        int version = header.getInt();
+        if (version != EventLog.VERSION) {
+            throw new IOException("Unsupported event log version " + version + ": " + path);
+        }
+        days = header.getInt();
+        grassAmount = header.getFloat();
+        int count = header.getInt();
+        eventsStart = EventLog.HEADER_SIZE + (long) EventLog.ANIMAL_SIZE * count;
+        if (count < 0 || size < eventsStart || (size - eventsStart) % EventLog.RECORD_SIZE != 0) {
+            throw new IOException("Truncated forest event log: " + path);
+        }
+        ids = new int[count];
+        species = new byte[count];
+        weight = new float[count];
+        speed = new float[count];
+        energy = new float[count];
+        MappedByteBuffer animals = map(EventLog.HEADER_SIZE, eventsStart - EventLog.HEADER_SIZE);
+        for (int i = 0; i < count; i++) {
+            ids[i] = animals.getInt();
+            species[i] = animals.get();
+            weight[i] = animals.getFloat();
+            speed[i] = animals.getFloat();
+            energy[i] = animals.getFloat();
+        }
+        end = size;
+        position = eventsStart;
+    }
+
+    /**
+     * Opens a log.
+     *
+     * @param path the log file.
+     * @return the reader, positioned before the first event.
+     * @throws IOException if the file cannot be read or is not an event log of this version.
+     */
+    public static EventLogReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new EventLogReader(path, channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps a region of the file in little-endian byte order.
+     *
+     * @param position the start of the region.
+     * @param length   the length of the region.
+     * @return the mapped region.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private MappedByteBuffer map(long position, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Moves to the next event.
+     *
+     * @return whether there was one; if not, the reader stays on the last event.
+     * @throws IOException if the file cannot be read or holds an unknown event type.
+     */
+    public boolean next() throws IOException {
+        if (position == end) {
+            return false;
+        }
+        if (window == null || position - windowStart == window.capacity()) {
+            windowStart = position;
+            window = map(position, Math.min(WINDOW_SIZE, end - position));
+        }
+        type = EventLog.typeOf(window.get());
+        code = window.get();
+        window.getShort();
+        actor = window.getInt();
+        target = window.getInt();
+        value = window.getFloat();
+        position += EventLog.RECORD_SIZE;
+        index++;
+        if (type == null) {
+            throw new IOException("Corrupt forest event log at event " + index + ": " + path);
+        }
+        return true;
+    }
+
+    /**
+     * @return the log file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the number of simulation days.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @return the starting grass amount.
+     */
+    public float getGrassAmount() {
+        return grassAmount;
+    }
+
+    /**
+     * @return the number of starting animals.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return its identifier.
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return its species code.
+     */
+    public byte getSpecies(int index) {
+        return species[index];
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return its weight.
+     */
+    public float getWeight(int index) {
+        return weight[index];
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return its speed.
+     */
+    public float getSpeed(int index) {
+        return speed[index];
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return its starting energy.
+     */
+    public float getEnergy(int index) {
+        return energy[index];
+    }
+
+    /**
+     * @return the position of the current event in the log, starting from 0.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the type of the current event.
+     */
+    public EventLog.Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the code of the current event.
+     */
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * @return the actor of the current event: an animal identifier, or the day of a day end.
+     */
+    public int getActor() {
+        return actor;
+    }
+
+    /**
+     * @return the target of the current event: the prey of a hunt, or -1.
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the value of the current event.
+     */
+    public float getValue() {
+        return value;
+    }
+
+    /**
+     * @param other another reader, positioned on an event.
+     * @return whether both readers are on the same event.
+     */
+    public boolean sameEvent(EventLogReader other) {
+        return type == other.type && code == other.code && actor == other.actor && target == other.target
+                && Float.floatToIntBits(value) == Float.floatToIntBits(other.value);
+    }
+
+    /**
+     * @return the current event as text.
+     */
+    public String describe() {
+        switch (type) {
+            case GRAZE:
+                return "animal " + actor + (code != 0 ? " grazed " : " found no grass for ") + value;
+            case HUNT:
+                HuntOutcome outcome = code >= 0 && code < HuntOutcome.values().length
+                        ? HuntOutcome.values()[code] : null;
+                return "animal " + actor + " hunted animal " + target + ": " + outcome
+                        + (outcome == HuntOutcome.SUCCESS || value != 0 ? " (+" + value + ")" : "");
+            case DEATH:
+                return "animal " + actor + " died";
+            default:
+                return "day " + actor + " ended with grass " + value;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
+
+/**
+ * State of a simulation rebuilt from an {@link EventLog}, as it was at the end of a given day.
+ *
+ * <p>Replaying applies every event to the starting animals and checks it against the rules as
+ * it goes: grazes must match the grass left, deaths must match the energy left at the end of
+ * the day and the grass must grow as the rules say. A log that contradicts itself is reported
+ * as corrupt instead of being replayed into an impossible state.
+ */
+class EventReplay {
+
+    private static final float MIN_AMOUNT_GRASS = Constants.MIN_AMOUNT_GRASS.getValue();
+    private static final float MAX_AMOUNT_GRASS = Constants.MAX_AMOUNT_GRASS.getValue();
+    private static final float MAX_ENERGY = Constants.MAX_ENERGY.getValue();
+
+    private final int days;
+    private final int[] ids;
+    private final byte[] species;
+    private final float[] weight;
+    private final float[] speed;
+    private final float[] energy;
+    private final boolean[] alive;
+    private final boolean[] dying;
+    private float grassAmount;
+    private int day;
+    private long events;
+
+    /**
+     * Copies the starting state from the header of a log.
+     *
+     * @param log the log.
+     */
+    private EventReplay(EventLogReader log) {
+        int size = log.size();
+        days = log.getDays();
+        grassAmount = log.getGrassAmount();
+        ids = new int[size];
+        species = new byte[size];
+        weight = new float[size];
+        speed = new float[size];
+        energy = new float[size];
+        alive = new boolean[size];
+        dying = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = log.getId(i);
+            species[i] = log.getSpecies(i);
+            weight[i] = log.getWeight(i);
+            speed[i] = log.getSpeed(i);
+            energy[i] = log.getEnergy(i);
+            alive[i] = true;
+        }
+    }
+
+    /**
+     * Replays a log up to the end of a day.
+     *
+     * @param path the log file.
+     * @param day  the day to stop after, or 0 for the starting state.
+     * @return the state at the end of that day, or at the end of the log if it stops earlier.
+     * @throws IOException if the log cannot be read or contradicts itself.
+     */
+    public static EventReplay replay(Path path, int day) throws IOException {
+        try (EventLogReader log = EventLogReader.open(path)) {
+            EventReplay replay = new EventReplay(log);
+            for (int i = 1; i < replay.ids.length; i++) {
+                if (replay.ids[i] <= replay.ids[i - 1]) {
+                    throw replay.corrupt(log);
+                }
+            }
+            while (replay.day < day && log.next()) {
+                replay.apply(log);
+                replay.events++;
+            }
+            return replay;
+        }
+    }
+
+    /**
+     * Applies the current event of a log.
+     *
+     * @param log the log, positioned on the event.
+     * @throws IOException if the event contradicts the state.
+     */
+    private void apply(EventLogReader log) throws IOException {
+        if (log.getType() == EventLog.Type.DAY_END) {
+            endDay(log);
+            return;
+        }
+        int actor = indexOf(log, log.getActor());
+        switch (log.getType()) {
+            case GRAZE:
+                float amount = log.getValue();
+                boolean enough = grassAmount >= amount;
+                if (enough != (log.getCode() != 0)) {
+                    throw corrupt(log);
+                }
+                if (enough) {
+                    energy[actor] = Math.min(energy[actor] + amount, MAX_ENERGY);
+                    grassAmount = Math.max(grassAmount - amount, MIN_AMOUNT_GRASS);
+                }
+                break;
+            case HUNT:
+                int prey = indexOf(log, log.getTarget());
+                if (log.getCode() == HuntOutcome.SUCCESS.ordinal()) {
+                    if (energy[prey] <= 0 || log.getValue() != weight[prey]) {
+                        throw corrupt(log);
+                    }
+                    energy[prey] = 0;
+                    energy[actor] = Math.min(energy[actor] + log.getValue(), MAX_ENERGY);
+                } else if (log.getValue() != 0) {
+                    throw corrupt(log);
+                }
+                break;
+            default:
+                dying[actor] = true;
+                break;
+        }
+    }
+
+    /**
+     * Ends the day: grass grows, energy decreases and the animals logged as dead are removed.
+     *
+     * @param log the log, positioned on the end of the day.
+     * @throws IOException if the grass or the deaths contradict the rules.
+     */
+    private void endDay(EventLogReader log) throws IOException {
+        grassAmount = Math.min(grassAmount * 2, MAX_AMOUNT_GRASS);
+        if (log.getActor() != day + 1 || Float.floatToIntBits(grassAmount) != Float.floatToIntBits(log.getValue())) {
+            throw corrupt(log);
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (!alive[i]) {
+                continue;
+            }
+            energy[i] = Math.max(energy[i] - 1, 0);
+            if ((energy[i] <= 0) != dying[i]) {
+                throw corrupt(log);
+            }
+            alive[i] = !dying[i];
+            dying[i] = false;
+        }
+        day++;
+    }
+
+    /**
+     * @param log the log, positioned on an event.
+     * @param id  the identifier of an animal.
+     * @return the position of that animal among the starting animals.
+     * @throws IOException if there is no such animal or it is already dead.
+     */
+    private int indexOf(EventLogReader log, int id) throws IOException {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0 || !alive[index]) {
+            throw corrupt(log);
+        }
+        return index;
+    }
+
+    /**
+     * @param log the log being replayed.
+     * @return the error reporting that its current event contradicts the replayed state.
+     */
+    private IOException corrupt(EventLogReader log) {
+        return new IOException("Inconsistent forest event log at event " + log.getIndex() + ": " + log.getPath());
+    }
+
+    /**
+     * @return the number of simulation days.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @return the last day replayed, which is before the requested one if the log ends earlier.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * @return the number of events replayed.
+     */
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * @return the grass amount at the end of the replayed day.
+     */
+    public float getGrassAmount() {
+        return grassAmount;
+    }
+
+    /**
+     * @return the number of starting animals, including those that died since.
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return whether it is still alive.
+     */
+    public boolean isAlive(int index) {
+        return alive[index];
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return its identifier.
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return its species code.
+     */
+    public byte getSpecies(int index) {
+        return species[index];
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return its weight.
+     */
+    public float getWeight(int index) {
+        return weight[index];
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return its speed.
+     */
+    public float getSpeed(int index) {
+        return speed[index];
+    }
+
+    /**
+     * @param index the position of a starting animal, in queue order.
+     * @return its energy at the end of the replayed day.
+     */
+    public float getEnergy(int index) {
+        return energy[index];
+    }
+}
+
+/**
+ * Compares two {@link EventLog}s event by event, e.g. of the reference loop and an optimized
+ * engine run on the same input, and reports where they diverge.
+ */
+class EventLogDiff {
+
+    private EventLogDiff() {
+    }
+
+    /**
+     * Compares two logs. Since every event after the first divergence usually differs as well,
+     * only the first few differences are reported.
+     *
+     * @param first  a log file.
+     * @param second another log file.
+     * @param limit  the maximum number of differences to report.
+     * @return the differences, empty if the logs hold the same run.
+     * @throws IOException if a log cannot be read.
+     */
+    public static List<String> diff(Path first, Path second, int limit) throws IOException {
+        List<String> differences = new ArrayList<>();
+        try (EventLogReader a = EventLogReader.open(first); EventLogReader b = EventLogReader.open(second)) {
+            if (a.getDays() != b.getDays()) {
+                differences.add("days: " + a.getDays() + " != " + b.getDays());
+            }
+            if (Float.floatToIntBits(a.getGrassAmount()) != Float.floatToIntBits(b.getGrassAmount())) {
+                differences.add("grass: " + a.getGrassAmount() + " != " + b.getGrassAmount());
+            }
+            if (a.size() != b.size()) {
+                differences.add("animals: " + a.size() + " != " + b.size());
+            }
+            for (int i = 0; i < Math.min(a.size(), b.size()) && differences.size() < limit; i++) {
+                if (a.getId(i) != b.getId(i) || a.getSpecies(i) != b.getSpecies(i)
+                        || a.getWeight(i) != b.getWeight(i) || a.getSpeed(i) != b.getSpeed(i)
+                        || a.getEnergy(i) != b.getEnergy(i)) {
+                    differences.add("animal " + i + ": " + describeAnimal(a, i) + " != " + describeAnimal(b, i));
+                }
+            }
+            int day = 1;
+            while (differences.size() < limit) {
+                boolean hasA = a.next();
+                boolean hasB = b.next();
+                if (!hasA || !hasB) {
+                    if (hasA != hasB) {
+                        EventLogReader longer = hasA ? a : b;
+                        differences.add("event " + longer.getIndex() + " (day " + day + "): only "
+                                + longer.getPath() + " goes on, with " + longer.describe());
+                    }
+                    break;
+                }
+                if (!a.sameEvent(b)) {
+                    differences.add("event " + a.getIndex() + " (day " + day + "): "
+                            + a.describe() + " != " + b.describe());
+                }
+                if (a.getType() == EventLog.Type.DAY_END) {
+                    day++;
+                }
+            }
+        }
+        return differences;
+    }
+
+    /**
+     * @param log   a log.
+     * @param index the position of a starting animal.
+     * @return the animal as text.
+     */
+    private static String describeAnimal(EventLogReader log, int index) {
+        return "#" + log.getId(index) + " species " + log.getSpecies(index) + " " + log.getWeight(index)
+                + " " + log.getSpeed(index) + " " + log.getEnergy(index);
+    }
+}
+
+/**
+ * Canonical identity of a scenario: the SHA-256 digest of its number of days, grass amount and
+ * animals in queue order, as parsed. Inputs that differ only in formatting, such as "5" and
+ * "5.0F", have the same key.
+ */
+class ScenarioKey {
+
+    private final byte[] digest;
+    private final int hash;
+
+    /**
+     * @param digest the digest of the scenario.
+     */
+    private ScenarioKey(byte[] digest) {
+        this.digest = digest;
+        this.hash = Arrays.hashCode(digest);
+    }
+
+    /**
+     * Hashes a scenario.
+     *
+     * @param scenario the scenario.
+     * @return its key.
+     */
+    public static ScenarioKey of(Scenario scenario) {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every Java platform supports SHA-256
+        }
+        PopulationStore population = scenario.getPopulation();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(scenario.getDays()).putFloat(scenario.getGrassAmount()).putInt(population.size());
+        for (int i = population.nextLive(-1); i >= 0; i = population.nextLive(i)) {
+            if (buffer.remaining() < 13) {
+                sha.update(buffer.flip());
+                buffer.clear();
+            }
+            buffer.put(population.getSpecies(i)).putFloat(population.getWeight(i))
+                    .putFloat(population.getSpeed(i)).putFloat(population.getEnergy(i));
+        }
+        sha.update(buffer.flip());
+        return new ScenarioKey(sha.digest());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ScenarioKey && Arrays.equals(digest, ((ScenarioKey) other).digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
+
+/**
+ * Least-recently-used cache of simulation responses, bounded both by the number of entries and
+ * by their total size in bytes. Thread-safe.
+ */
+class ResultCache {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<ScenarioKey, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxEntries the largest number of responses kept.
+     * @param maxBytes   the largest total size of the responses kept.
+     */
+    public ResultCache(int maxEntries, long maxBytes) {
+        this.maxEntries = Math.max(maxEntries, 1);
+        this.maxBytes = Math.max(maxBytes, 0);
+    }
+
+    /**
+     * @param key a scenario.
+     * @return its cached response, which becomes the most recently used, or null.
+     */
+    public synchronized byte[] get(ScenarioKey key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Caches a response, evicting the least recently used ones until the cache is within its
+     * bounds. A response larger than the whole cache is not kept.
+     *
+     * @param key      a scenario.
+     * @param response its response, which must not be modified afterwards.
+     */
+    public synchronized void put(ScenarioKey key, byte[] response) {
+        if (response.length > maxBytes) {
+            return;
+        }
+        byte[] previous = entries.put(key, response);
+        bytes += response.length - (previous == null ? 0 : previous.length);
+        Iterator<byte[]> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            bytes -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * @return the number of cached responses.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total size of the cached responses.
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+}
+
+/**
+ * Local HTTP service simulating scenarios posted in the input file format, so clients do not
+ * start a JVM per scenario.
+ *
+ * <p>{@code POST /simulate} answers with the sounds of the surviving animals, one per line, and
+ * a last line of hunt outcome counts, as in batch mode; an invalid scenario is answered with
+ * status 400 and its input error. Responses are cached by {@link ScenarioKey}, and concurrent
+ * requests for the same scenario wait for a single simulation instead of running their own.
+ * The {@code X-Cache} header tells whether a response was a {@code HIT}, a {@code MISS} or
+ * {@code COALESCED} with another request. {@code GET /stats} reports the counters.
+ * Requests are handled on a bounded pool of threads, each of which keeps its own parser and
+ * parses straight from the request; bodies larger than a fixed limit are answered with 413.
+ */
+class SimulationServer {
+
+    private static final int DEFAULT_CACHE_ENTRIES = 4096;
+    private static final long DEFAULT_CACHE_BYTES = 64L << 20;
+    private static final long DEFAULT_MAX_BODY_BYTES = 16L << 20;
+
+    private final SpeciesRegistry species;
+    private final SimulationLimits limits;
+    private final long maxBodyBytes;
+    private final ThreadLocal<ScenarioParser> parsers;
+    private final ResultCache cache;
+    private final ConcurrentHashMap<ScenarioKey, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Creates a server with a default cache of 4096 responses and 64 MB, accepting scenarios of
+     * up to 16 MB.
+     *
+     * @param species the species the scenarios may contain.
+     * @param limits  the largest numbers of days and animals of a scenario.
+     */
+    public SimulationServer(SpeciesRegistry species, SimulationLimits limits) {
+        this(species, limits, DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * Creates a server with a default cache of 4096 responses and 64 MB.
+     *
+     * @param species      the species the scenarios may contain.
+     * @param limits       the largest numbers of days and animals of a scenario.
+     * @param maxBodyBytes the size of the largest scenario accepted, in bytes.
+     */
+    public SimulationServer(SpeciesRegistry species, SimulationLimits limits, long maxBodyBytes) {
+        this(species, limits, new ResultCache(DEFAULT_CACHE_ENTRIES, DEFAULT_CACHE_BYTES), maxBodyBytes);
+    }
+
+    /**
+     * Creates a server accepting scenarios of up to 16 MB.
+     *
+     * @param species the species the scenarios may contain.
+     * @param limits  the largest numbers of days and animals of a scenario.
+     * @param cache   the cache of responses.
+     */
+    public SimulationServer(SpeciesRegistry species, SimulationLimits limits, ResultCache cache) {
+        this(species, limits, cache, DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * Creates a server.
+     *
+     * @param species      the species the scenarios may contain.
+     * @param limits       the largest numbers of days and animals of a scenario.
+     * @param cache        the cache of responses.
+     * @param maxBodyBytes the size of the largest scenario accepted, in bytes.
+     */
+    public SimulationServer(SpeciesRegistry species, SimulationLimits limits, ResultCache cache, long maxBodyBytes) {
+        this.species = species;
+        this.limits = limits;
+        this.cache = cache;
+        this.parsers = ThreadLocal.withInitial(() -> new ScenarioParser(species, limits));
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+
+    /**
+     * Starts listening on the loopback interface.
+     *
+     * @param port    the port, or 0 for any free one.
+     * @param threads the number of requests handled at the same time.
+     * @return the address the server listens on.
+     * @throws IOException if the port cannot be bound.
+     */
+    public InetSocketAddress start(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        server.setExecutor(executor);
+        server.createContext("/simulate", this::handleSimulate);
+        server.createContext("/stats", this::handleStats);
+        server.start();
+        return server.getAddress();
+    }
+
+    /**
+     * Stops the server, letting the requests being handled finish first.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * Simulates a posted scenario, or answers from the cache or another request's simulation.
+     *
+     * @param exchange the request.
+     * @throws IOException if the request cannot be read or answered.
+     */
+    private void handleSimulate(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "Only POST is supported\n", null);
+                return;
+            }
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (length != null && length.matches("\\d{1,18}") && Long.parseLong(length) > maxBodyBytes) {
+                rejected.increment();
+                respond(exchange, 413, "The scenario is too large\n", null);
+                return;
+            }
+            // Parse straight from the request, so no thread buffers a whole body
+            BoundedChannel body = new BoundedChannel(Channels.newChannel(exchange.getRequestBody()), maxBodyBytes);
+            Scenario scenario;
+            Exception invalid = null;
+            try {
+                scenario = parsers.get().parse(body);
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                scenario = null;
+                invalid = e;
+            }
+            if (body.isExceeded()) {
+                rejected.increment();
+                respond(exchange, 413, "The scenario is too large\n", null);
+                return;
+            }
+            if (invalid != null) {
+                rejected.increment();
+                respond(exchange, 400, ForestSimulator.describeError(invalid) + "\n", null);
+                return;
+            }
+            ScenarioKey key = ScenarioKey.of(scenario);
+            byte[] response = cache.get(key);
+            if (response != null) {
+                hits.increment();
+                respond(exchange, 200, response, "HIT");
+                return;
+            }
+            CompletableFuture<byte[]> pending = new CompletableFuture<>();
+            CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, pending);
+            if (running != null) {
+                coalesced.increment();
+                respond(exchange, 200, running.join(), "COALESCED");
+                return;
+            }
+            try {
+                response = cache.get(key); // Another request may have finished since the first look
+                if (response == null) {
+                    response = simulate(scenario);
+                    cache.put(key, response);
+                }
+                pending.complete(response);
+            } catch (RuntimeException | Error e) {
+                pending.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, pending);
+            }
+            misses.increment();
+            respond(exchange, 200, response, "MISS");
+        } catch (CompletionException e) {
+            respond(exchange, 500, "The simulation failed\n", null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reports the counters of the server.
+     *
+     * @param exchange the request.
+     * @throws IOException if the request cannot be answered.
+     */
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            respond(exchange, 200, "hits " + hits.sum() + "\nmisses " + misses.sum() + "\ncoalesced "
+                    + coalesced.sum() + "\nrejected " + rejected.sum() + "\ncached " + cache.size()
+                    + "\ncachedBytes " + cache.bytes() + "\n", null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Simulates a scenario in place.
+     *
+     * @param scenario the scenario.
+     * @return the response: the sounds of the survivors, then the hunt outcome counts.
+     */
+    private static byte[] simulate(Scenario scenario) {
+        Simulation simulation;
+        try {
+            simulation = Simulation.builder().scenario(scenario).build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e); // The parser already validated the scenario
+        }
+        simulation.run();
+        StringBuilder response = new StringBuilder();
+        for (String sound : simulation.getSounds()) {
+            response.append(sound).append('\n');
+        }
+        response.append(simulation.getHuntMetrics()).append('\n');
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @see #respond(HttpExchange, int, byte[], String)
+     */
+    private static void respond(HttpExchange exchange, int status, String body, String cacheStatus)
+            throws IOException {
+        respond(exchange, status, body.getBytes(StandardCharsets.UTF_8), cacheStatus);
+    }
+
+    /**
+     * Sends a plain-text response.
+     *
+     * @param exchange    the request.
+     * @param status      the status code.
+     * @param body        the body.
+     * @param cacheStatus the value of the {@code X-Cache} header, or null for none.
+     * @throws IOException if the response cannot be sent.
+     */
+    private static void respond(HttpExchange exchange, int status, byte[] body, String cacheStatus)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        if (cacheStatus != null) {
+            exchange.getResponseHeaders().set("X-Cache", cacheStatus);
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Reads a request body up to a number of bytes, then reports the end of the input.
+     */
+    private static final class BoundedChannel implements ReadableByteChannel {
+
+        private final ReadableByteChannel source;
+        private long remaining;
+        private boolean exceeded;
+
+        /**
+         * @param source   the body.
+         * @param maxBytes the number of bytes that may be read.
+         */
+        BoundedChannel(ReadableByteChannel source, long maxBytes) {
+            this.source = source;
+            this.remaining = maxBytes;
+        }
+
+        /**
+         * @return whether the body holds more than the bytes that may be read.
+         */
+        boolean isExceeded() {
+            return exceeded;
+        }
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+            if (remaining == 0) {
+                // Anything beyond the limit makes the body too large; one byte is enough to tell
+                exceeded = exceeded || source.read(ByteBuffer.allocate(1)) > 0;
+                return -1;
+            }
+            int limit = target.limit();
+            if (target.remaining() > remaining) {
+                target.limit(target.position() + (int) remaining);
+            }
+            try {
+                int read = source.read(target);
+                if (read > 0) {
+                    remaining -= read;
+                }
+                return read;
+            } finally {
+                target.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
+
+/**
+ * Micro-benchmarks of the simulation hot paths, run with {@code --bench [filter]}.
+ *
+ * <p>Every benchmark runs on freshly generated populations of several sizes and species mixes.
+ * Preparing a trial is not timed; each trial is run a few times to warm up the JIT, then timed,
+ * and the mean and best time per operation are printed as one tab-separated line.
+ */
+class SimulationBenchmark {
+
+    private static final int[] POPULATION_SIZES = {1_000, 100_000, 1_000_000};
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final long SEED = 42;
+    private static final float MIN_WEIGHT = Constants.MIN_WEIGHT.getValue();
+    private static final float MAX_WEIGHT = Constants.MAX_WEIGHT.getValue();
+    private static final float MIN_SPEED = Constants.MIN_SPEED.getValue();
+    private static final float MAX_SPEED = Constants.MAX_SPEED.getValue();
+    private static final float MAX_ENERGY = Constants.MAX_ENERGY.getValue();
+    private static final float MAX_AMOUNT_GRASS = Constants.MAX_AMOUNT_GRASS.getValue();
+    private static final int MAX_NO_ANIMALS = (int) Constants.MAX_NO_ANIMALS.getValue();
+    private static final float SPATIAL_HUNT_RADIUS = 2;
+    private static final int ALLOCATION_DAYS = 10;
+    private static final int ENSEMBLE_DAYS = 3_000;
+    private static final int ENSEMBLE_REPLICAS = 1_024;
+    private static final long ENSEMBLE_HEAP_SLACK = 8L << 20;
+    private static final float GRAZE_ENERGY_DIVISOR = Constants.GRAZE_ENERGY_DIVISOR.getValue();
+
+    // Results are accumulated here so the JIT cannot drop the measured work.
+    private static volatile long sink;
+
+    /**
+     * Relative numbers of lions, zebras and boars in a generated population.
+     */
+    enum Mix {
+        BALANCED(1, 1, 1),
+        PREDATOR_HEAVY(4, 1, 1),
+        GRAZERS_ONLY(0, 1, 0);
+
+        private final int[] shares;
+
+        /**
+         * @param lions  the share of lions.
+         * @param zebras the share of zebras.
+         * @param boars  the share of boars.
+         */
+        Mix(int lions, int zebras, int boars) {
+            this.shares = new int[] {lions, zebras, boars};
+        }
+
+        /**
+         * @param random the random generator.
+         * @return a species drawn according to the shares.
+         */
+        Species draw(Random random) {
+            int total = shares[0] + shares[1] + shares[2];
+            int pick = random.nextInt(total);
+            Species[] species = Species.values();
+            for (int i = 0; i < shares.length; i++) {
+                if (pick < shares[i]) {
+                    return species[i];
+                }
+                pick -= shares[i];
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * One timed run, prepared without being timed.
+     */
+    interface Trial {
+
+        /**
+         * Runs the measured work.
+         *
+         * @return the number of operations performed.
+         * @throws Exception if the work fails.
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * Prepares trials of one benchmark.
+     */
+    interface Benchmark {
+
+        /**
+         * @param size the population size.
+         * @param mix  the species mix.
+         * @return a new trial.
+         * @throws Exception if the trial cannot be prepared.
+         */
+        Trial prepare(int size, Mix mix) throws Exception;
+    }
+
+    /**
+     * Runs every benchmark whose name contains the filter and prints the results. The
+     * allocation, birth order and ensemble memory checks run with an empty filter, or alone when
+     * the filter names them.
+     *
+     * @param filter the filter; empty runs every check and benchmark.
+     * @param output the sink receiving the results.
+     * @throws Exception if a benchmark fails.
+     */
+    public static void main(String filter, OutputSink output) throws Exception {
+        Map<String, Benchmark> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("dayTick", SimulationBenchmark::dayTick);
+        benchmarks.put("parallelDayTick", SimulationBenchmark::parallelDayTick);
+        benchmarks.put("spatialDayTick", SimulationBenchmark::spatialDayTick);
+        benchmarks.put("choosePrey", SimulationBenchmark::choosePrey);
+        benchmarks.put("huntPrey", SimulationBenchmark::huntPrey);
+        benchmarks.put("grazeInTheField", SimulationBenchmark::grazeInTheField);
+        benchmarks.put("concurrentGraze", SimulationBenchmark::concurrentGraze);
+        benchmarks.put("lockedGraze", SimulationBenchmark::lockedGraze);
+        benchmarks.put("removeDeadAnimals", SimulationBenchmark::removeDeadAnimals);
+        benchmarks.put("removeDeadColumns", SimulationBenchmark::removeDeadColumns);
+        benchmarks.put("decayColumns", SimulationBenchmark::decayColumns);
+        benchmarks.put("decayAndRemoveDead", SimulationBenchmark::decayAndRemoveDead);
+        benchmarks.put("parseScenario", SimulationBenchmark::parseScenario);
+
+        if (filter.isEmpty() || filter.equals("allocations")) {
+            checkAllocations(output);
+        }
+        if (filter.isEmpty() || filter.equals("birthOrder")) {
+            checkBirthOrder(output);
+        }
+        if (filter.isEmpty() || filter.equals("ensembleMemory")) {
+            checkEnsembleMemory(output);
+        }
+        if (filter.equals("allocations") || filter.equals("birthOrder") || filter.equals("ensembleMemory")) {
+            return; // Only the check was asked for
+        }
+        output.println("benchmark\tsize\tmix\tmean ns/op\tbest ns/op");
+        for (Map.Entry<String, Benchmark> benchmark : benchmarks.entrySet()) {
+            if (!benchmark.getKey().contains(filter)) {
+                continue;
+            }
+            for (int size : POPULATION_SIZES) {
+                for (Mix mix : Mix.values()) {
+                    double[] result = measure(benchmark.getValue(), size, mix);
+                    if (result == null) {
+                        continue; // Nothing to measure, e.g. hunting without hunters
+                    }
+                    output.println(String.format(Locale.ROOT, "%s\t%d\t%s\t%.2f\t%.2f",
+                            benchmark.getKey(), size, mix, result[0], result[1]));
+                    output.flush(); // Benchmarks are slow, so show every result as it comes
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that a simulated day allocates nothing, on the animal objects and on the columnar
+     * engine with neighbour and best-prey hunting, with the allocation counter of the running thread, and prints the bytes allocated
+     * per day for every population. Identical populations are simulated first without being
+     * measured, so every class, constant and call site the measured days reach is already
+     * resolved and compiled.
+     *
+     * @param output the sink receiving the results.
+     * @throws IllegalStateException if a day allocated.
+     * @throws Exception             if a population cannot be generated.
+     */
+    static void checkAllocations(OutputSink output) throws Exception {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String failure = null;
+        output.println("loop\tsize\tmix\tbytes/day");
+        for (int size : POPULATION_SIZES) {
+            for (Mix mix : Mix.values()) {
+                long objectBytes = 0;
+                long columnarBytes = 0;
+                long bestPreyBytes = 0;
+                for (int run = 0; run <= WARMUP_ITERATIONS; run++) { // The last run is the measured one
+                    ArrayList<Animal> animals = population(size, mix).toAnimals();
+                    Field field = new Field(MAX_AMOUNT_GRASS);
+                    HuntMetrics huntMetrics = new HuntMetrics();
+                    long start = threads.getCurrentThreadAllocatedBytes();
+                    for (int day = 0; day < ALLOCATION_DAYS; day++) {
+                        ForestSimulator.simulateDay(animals, field, huntMetrics, null, null, null);
+                    }
+                    objectBytes = (threads.getCurrentThreadAllocatedBytes() - start) / ALLOCATION_DAYS;
+
+                    PopulationStore store = population(size, mix);
+                    PopulationEngine engine = new PopulationEngine(store, new Field(MAX_AMOUNT_GRASS));
+                    start = threads.getCurrentThreadAllocatedBytes();
+                    for (int day = 0; day < ALLOCATION_DAYS; day++) {
+                        engine.simulateDay();
+                    }
+                    columnarBytes = (threads.getCurrentThreadAllocatedBytes() - start) / ALLOCATION_DAYS;
+
+                    store = population(size, mix);
+                    engine = new PopulationEngine(store, new Field(MAX_AMOUNT_GRASS));
+                    engine.setHuntingMode(HuntingMode.BEST_PREY);
+                    engine.runSimulation(1); // Builds the prey index
+                    start = threads.getCurrentThreadAllocatedBytes();
+                    for (int day = 0; day < ALLOCATION_DAYS; day++) {
+                        engine.simulateDay();
+                    }
+                    bestPreyBytes = (threads.getCurrentThreadAllocatedBytes() - start) / ALLOCATION_DAYS;
+                }
+
+                output.println(String.format(Locale.ROOT, "objects\t%d\t%s\t%d", size, mix, objectBytes));
+                output.println(String.format(Locale.ROOT, "columnar\t%d\t%s\t%d", size, mix, columnarBytes));
+                output.println(String.format(Locale.ROOT, "best-prey\t%d\t%s\t%d", size, mix, bestPreyBytes));
+                long bytes = Math.max(objectBytes, Math.max(columnarBytes, bestPreyBytes));
+                if (bytes > 0 && failure == null) {
+                    failure = "A simulated day of " + size + " " + mix + " animals allocated " + bytes + " bytes";
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+    }
+
+    /**
+     * Checks that newborns join the end of the queue in the order of their parents, so the order
+     * of the hunts does not depend on when the store is compacted. Every population breeds for a
+     * few days twice, once compacted before every day; in both runs the identifiers of the
+     * animals must increase along the queue, and the animals and hunt outcomes must be the same.
+     *
+     * @param output the sink receiving the results.
+     * @throws IllegalStateException if the runs differ or an animal is out of order.
+     * @throws Exception             if a population cannot be generated.
+     */
+    static void checkBirthOrder(OutputSink output) throws Exception {
+        float[] thresholds = new float[SpeciesRegistry.DEFAULT.size()];
+        float[] costs = new float[thresholds.length];
+        Arrays.fill(thresholds, MAX_ENERGY / 2);
+        Arrays.fill(costs, MAX_ENERGY / 5);
+        int size = POPULATION_SIZES[0];
+        BreedingRules breeding = new BreedingRules(thresholds, costs, 0.1, 2 * size, SEED);
+        String failure = null;
+        output.println("order\tsize\tmix\tanimals\tbirths");
+        for (Mix mix : Mix.values()) {
+            PopulationStore kept = population(size, mix);
+            PopulationStore compacted = population(size, mix);
+            kept.trackIds();
+            compacted.trackIds();
+            PopulationEngine keptEngine = new PopulationEngine(kept, new Field(MAX_AMOUNT_GRASS));
+            PopulationEngine compactedEngine = new PopulationEngine(compacted, new Field(MAX_AMOUNT_GRASS));
+            keptEngine.setBreedingRules(breeding);
+            compactedEngine.setBreedingRules(breeding);
+            for (int day = 0; day < ALLOCATION_DAYS; day++) {
+                keptEngine.simulateDay();
+                compacted.compact();
+                compactedEngine.simulateDay();
+            }
+            output.println(String.format(Locale.ROOT, "order\t%d\t%s\t%d\t%d",
+                    size, mix, kept.size(), keptEngine.getBirths()));
+            if (failure == null) {
+                failure = compareOrder(kept, compacted);
+            }
+            String keptHunts = keptEngine.getHuntMetrics().toString();
+            if (failure == null && !keptHunts.equals(compactedEngine.getHuntMetrics().toString())) {
+                failure = "The hunts of " + size + " " + mix + " animals depend on compaction";
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException(failure);
+        }
+    }
+
+    /**
+     * Checks that the heap an ensemble keeps does not grow with the number of replicas. A long
+     * ensemble runs with some replicas, then with four times as many, and the peak of the heap
+     * pools holding long-lived objects, every pool but the eden and survivor spaces, must not
+     * grow by more than the first peak plus some slack.
+     *
+     * @param output the sink receiving the results.
+     * @throws IllegalStateException if the peak grew with the replicas.
+     * @throws Exception             if a population cannot be generated or a replica fails.
+     */
+    static void checkEnsembleMemory(OutputSink output) throws Exception {
+        Scenario scenario = new Scenario(ENSEMBLE_DAYS, MAX_AMOUNT_GRASS, population(POPULATION_SIZES[0], Mix.BALANCED));
+        StochasticRules rules = new StochasticRules(1, 0, false);
+        output.println("ensemble\tdays\treplicas\tpeak bytes");
+        long[] peaks = new long[2];
+        for (int run = 0; run < peaks.length; run++) {
+            int replicas = ENSEMBLE_REPLICAS << (2 * run);
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+            new EnsembleRunner(scenario, rules, SEED).run(replicas);
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && !pool.getName().contains("Eden")
+                        && !pool.getName().contains("Survivor")) {
+                    peaks[run] += pool.getPeakUsage().getUsed();
+                }
+            }
+            output.println(String.format(Locale.ROOT, "ensemble\t%d\t%d\t%d",
+                    ENSEMBLE_DAYS, replicas, peaks[run]));
+        }
+        if (peaks[1] > 2 * peaks[0] + ENSEMBLE_HEAP_SLACK) {
+            throw new IllegalStateException("The heap of an ensemble grows with its replicas, from "
+                    + peaks[0] + " to " + peaks[1] + " bytes");
+        }
+    }
+
+    /**
+     * @param kept      a population simulated without extra compactions.
+     * @param compacted the same population, compacted before every day.
+     * @return why the populations differ or are out of order, or null if they match.
+     */
+    private static String compareOrder(PopulationStore kept, PopulationStore compacted) {
+        int previous = -1;
+        int i = kept.nextLive(-1);
+        int j = compacted.nextLive(-1);
+        for (; i >= 0 && j >= 0; i = kept.nextLive(i), j = compacted.nextLive(j)) {
+            if (kept.getId(i) != compacted.getId(j) || kept.getEnergy(i) != compacted.getEnergy(j)) {
+                return "Animal " + kept.getId(i) + " depends on compaction";
+            }
+            if (kept.getId(i) <= previous) {
+                return "Animal " + kept.getId(i) + " is queued after animal " + previous;
+            }
+            previous = kept.getId(i);
+        }
+        return i == j ? null : "The populations have different sizes";
+    }
+
+    /**
+     * Warms up and times a benchmark.
+     *
+     * @param benchmark the benchmark.
+     * @param size      the population size.
+     * @param mix       the species mix.
+     * @return the mean and the best time per operation, in nanoseconds, or null if the trials
+     *         performed no operations.
+     * @throws Exception if the benchmark fails.
+     */
+    static double[] measure(Benchmark benchmark, int size, Mix mix) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            benchmark.prepare(size, mix).run();
+        }
+        long totalNanos = 0;
+        long totalOperations = 0;
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            Trial trial = benchmark.prepare(size, mix);
+            long start = System.nanoTime();
+            long operations = trial.run();
+            long nanos = System.nanoTime() - start;
+            totalNanos += nanos;
+            totalOperations += operations;
+            best = Math.min(best, (double) nanos / Math.max(operations, 1));
+        }
+        if (totalOperations == 0) {
+            return null;
+        }
+        return new double[] {(double) totalNanos / totalOperations, best};
+    }
+
+    /**
+     * Generates a population with random properties within the input bounds.
+     *
+     * @param size the number of animals.
+     * @param mix  the species mix.
+     * @return the population.
+     * @throws Exception if a generated animal is invalid.
+     */
+    static PopulationStore population(int size, Mix mix) throws Exception {
+        Random random = new Random(SEED);
+        PopulationStore store = new PopulationStore(size);
+        for (int i = 0; i < size; i++) {
+            store.add(mix.draw(random),
+                    MIN_WEIGHT + random.nextFloat() * (MAX_WEIGHT - MIN_WEIGHT),
+                    MIN_SPEED + random.nextFloat() * (MAX_SPEED - MIN_SPEED),
+                    1 + random.nextFloat() * (MAX_ENERGY - 1));
+        }
+        return store;
+    }
+
+    /**
+     * One day of the columnar engine; one operation per animal.
+     */
+    private static Trial dayTick(int size, Mix mix) throws Exception {
+        PopulationStore store = population(size, mix);
+        PopulationEngine engine = new PopulationEngine(store, new Field(MAX_AMOUNT_GRASS));
+        return () -> {
+            engine.simulateDay();
+            sink += store.size();
+            return size;
+        };
+    }
+
+    /**
+     * One day of the fork/join engine; one operation per animal.
+     */
+    private static Trial parallelDayTick(int size, Mix mix) throws Exception {
+        PopulationStore store = population(size, mix);
+        ParallelPopulationEngine engine =
+                new ParallelPopulationEngine(store, new Field(MAX_AMOUNT_GRASS), ForkJoinPool.commonPool());
+        return () -> {
+            engine.simulateDay();
+            sink += store.size();
+            return size;
+        };
+    }
+
+    /**
+     * One day of the spatial engine on a landscape with about one animal per grass cell;
+     * one operation per animal.
+     */
+    private static Trial spatialDayTick(int size, Mix mix) throws Exception {
+        PopulationStore store = population(size, mix);
+        int side = (int) Math.ceil(Math.sqrt(size));
+        Random random = new Random(SEED);
+        for (int i = 0; i < size; i++) {
+            store.setPosition(i, random.nextFloat() * side, random.nextFloat() * side);
+        }
+        SpatialEngine engine = new SpatialEngine(store, new GrassGrid(side, side, MAX_AMOUNT_GRASS), SPATIAL_HUNT_RADIUS);
+        return () -> {
+            engine.simulateDay();
+            sink += store.size();
+            return size;
+        };
+    }
+
+    /**
+     * The exception-based {@link Carnivore#choosePrey} of every hunter against its neighbour.
+     */
+    private static Trial choosePrey(int size, Mix mix) throws Exception {
+        ArrayList<Animal> animals = population(size, mix).toAnimals();
+        return () -> {
+            long hunts = 0;
+            for (int i = 0; i < animals.size(); i++) {
+                Animal hunter = animals.get(i);
+                if (hunter instanceof Carnivore) {
+                    try {
+                        Animal prey = ((Carnivore) hunter).choosePrey(
+                                Collections.singletonList(animals.get((i + 1) % animals.size())), new T<>(hunter));
+                        sink += prey == null ? 0 : 1;
+                    } catch (SelfHuntingException | CannibalismException | TooStrongPreyException e) {
+                        sink += e.getMessage().length();
+                    }
+                    hunts++;
+                }
+            }
+            return hunts;
+        };
+    }
+
+    /**
+     * {@link Carnivore#hunt}, which checks the rules without exceptions and calls
+     * {@link Carnivore#huntPrey}, for every hunter against its neighbour.
+     */
+    private static Trial huntPrey(int size, Mix mix) throws Exception {
+        ArrayList<Animal> animals = population(size, mix).toAnimals();
+        return () -> {
+            long hunts = 0;
+            for (int i = 0; i < animals.size(); i++) {
+                Animal hunter = animals.get(i);
+                if (hunter instanceof Carnivore) {
+                    sink += ((Carnivore) hunter).hunt(hunter, animals.get((i + 1) % animals.size())).ordinal();
+                    hunts++;
+                }
+            }
+            return hunts;
+        };
+    }
+
+    /**
+     * {@link Herbivore#grazeInTheField} of every grazer on a full field.
+     */
+    private static Trial grazeInTheField(int size, Mix mix) throws Exception {
+        ArrayList<Animal> animals = population(size, mix).toAnimals();
+        Field field = new Field(MAX_AMOUNT_GRASS);
+        return () -> {
+            long grazes = 0;
+            for (Animal animal : animals) {
+                if (animal instanceof Herbivore) {
+                    ((Herbivore) animal).grazeInTheField(animal, field);
+                    grazes++;
+                }
+            }
+            sink += (long) field.getGrassAmount();
+            return grazes;
+        };
+    }
+
+    /**
+     * One day of grazing on a full {@link ConcurrentField}: every grazer claims its need at once,
+     * on every core. As in the simulation, the grass runs out after the first few hundred grazers
+     * and the others are refused. Every run starts on a new full field. One operation per grazer.
+     */
+    private static Trial concurrentGraze(int size, Mix mix) throws Exception {
+        PopulationStore store = population(size, mix);
+        return () -> {
+            ConcurrentField field = new ConcurrentField(MAX_AMOUNT_GRASS);
+            return grazeInParallel(store, field, field::claimGrass);
+        };
+    }
+
+    /**
+     * {@link #concurrentGraze} on a plain {@link Field} guarded by a lock, for comparison.
+     */
+    private static Trial lockedGraze(int size, Mix mix) throws Exception {
+        PopulationStore store = population(size, mix);
+        return () -> {
+            Field field = new Field(MAX_AMOUNT_GRASS);
+            return grazeInParallel(store, field, need -> {
+                synchronized (field) {
+                    return field.claimGrass(need);
+                }
+            });
+        };
+    }
+
+    /**
+     * Lets every grazer of the population graze once, in parallel.
+     *
+     * @param store the population.
+     * @param field the field the grazers share.
+     * @param graze claims a need from the field.
+     * @return the number of grazers.
+     */
+    private static long grazeInParallel(PopulationStore store, Field field, Grazing graze) {
+        SpeciesRegistry registry = store.getRegistry();
+        long fed = IntStream.range(0, store.slots()).parallel()
+                .filter(i -> registry.grazes(store.getSpecies(i))
+                        && graze.claim(store.getWeight(i) / GRAZE_ENERGY_DIVISOR))
+                .count();
+        sink += fed + (long) field.getGrassAmount();
+        return IntStream.range(0, store.slots()).filter(i -> registry.grazes(store.getSpecies(i))).count();
+    }
+
+    /**
+     * Claims a grazer's need from a shared field.
+     */
+    interface Grazing {
+
+        /**
+         * @param need the grass the grazer needs.
+         * @return whether the grazer was fed.
+         */
+        boolean claim(float need);
+    }
+
+    /**
+     * {@link ForestSimulator#removeDeadAnimals} on a list where every other animal is dead.
+     */
+    private static Trial removeDeadAnimals(int size, Mix mix) throws Exception {
+        ArrayList<Animal> animals = population(size, mix).toAnimals();
+        for (int i = 0; i < animals.size(); i += 2) {
+            animals.get(i).die();
+        }
+        return () -> {
+            ForestSimulator.removeDeadAnimals(animals);
+            sink += animals.size();
+            return size;
+        };
+    }
+
+    /**
+     * {@link PopulationStore#removeDead} on a store where every other animal is dead.
+     */
+    private static Trial removeDeadColumns(int size, Mix mix) throws Exception {
+        PopulationStore store = population(size, mix);
+        for (int i = 0; i < store.size(); i += 2) {
+            store.kill(i);
+        }
+        return () -> {
+            sink += store.removeDead();
+            return size;
+        };
+    }
+
+    /**
+     * The end of a day as two passes, {@link PopulationStore#decrementEnergy()} then
+     * {@link PopulationStore#removeDead}, on a store where every other animal is about to die.
+     */
+    private static Trial decayColumns(int size, Mix mix) throws Exception {
+        PopulationStore store = dying(size, mix);
+        return () -> {
+            store.decrementEnergy();
+            sink += store.removeDead();
+            return size;
+        };
+    }
+
+    /**
+     * The same end of a day as {@link #decayColumns}, fused into
+     * {@link PopulationStore#decayAndRemoveDead}.
+     */
+    private static Trial decayAndRemoveDead(int size, Mix mix) throws Exception {
+        PopulationStore store = dying(size, mix);
+        return () -> {
+            sink += store.decayAndRemoveDead();
+            return size;
+        };
+    }
+
+    /**
+     * @param size the population size.
+     * @param mix  the species mix.
+     * @return a population where every other animal has 1 energy left.
+     * @throws Exception if a generated animal is invalid.
+     */
+    private static PopulationStore dying(int size, Mix mix) throws Exception {
+        PopulationStore store = population(size, mix);
+        for (int i = 0; i < store.size(); i += 2) {
+            store.decrementEnergy(i, store.getEnergy(i) - 1);
+        }
+        return store;
+    }
+
+    /**
+     * @param value a value within the input bounds.
+     * @return the value rounded to one decimal, as input files are usually written.
+     */
+    private static float oneDecimal(float value) {
+        return Math.round(value * 10) / 10f;
+    }
+
+    /**
+     * {@link ScenarioParser} on input files of the largest allowed population, parsed until
+     * {@code size} animal lines were read; one operation per line.
+     */
+    private static Trial parseScenario(int size, Mix mix) throws Exception {
+        PopulationStore store = population(MAX_NO_ANIMALS, mix);
+        StringBuilder input = new StringBuilder();
+        input.append((int) Constants.MAX_DAYS.getValue()).append('\n')
+                .append(MAX_AMOUNT_GRASS).append('\n')
+                .append(store.size()).append('\n');
+        for (int i = 0; i < store.size(); i++) {
+            input.append(store.getType(i).getName()).append(' ')
+                    .append(oneDecimal(store.getWeight(i))).append(' ')
+                    .append(oneDecimal(store.getSpeed(i))).append(' ')
+                    .append(oneDecimal(store.getEnergy(i))).append('\n');
+        }
+        byte[] bytes = input.toString().getBytes(StandardCharsets.US_ASCII);
+        ScenarioParser parser = new ScenarioParser();
+        int files = Math.max(size / store.size(), 1);
+        return () -> {
+            for (int i = 0; i < files; i++) {
+                sink += parser.parse(Channels.newChannel(new ByteArrayInputStream(bytes))).getDays();
+            }
+            return (long) files * (store.size() + 3);
+        };
+    }
+}